@@ -0,0 +1,414 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Title:        Business day calendar.
+ * Description:  Working days between January 1 of <code>firstYear</code> and December 31
+ *               of <code>lastYear</code>, built once from weekend days, yearly holidays,
+ *               Easter Monday and lists of single holidays or working days, and kept as
+ *               one bit per day (set for a working day).
+ *
+ *               A count of the working days before every 64-day word of the bitset makes
+ *               "working days between" two bit counts and a subtraction; the word holding
+ *               every 64th working day is sampled, so "add N working days" starts from a
+ *               sample and steps over at most a few words.  No query loops over days or
+ *               creates a date per day.
+ *
+ *               Days are the dates of the <code>UDate</code> arguments in their own time
+ *               zones; results keep the time of day of the argument, through
+ *               <code>adjust(UNIT_DAYS, n)</code>.  A day outside the range throws an
+ *               <code>IllegalArgumentException</code>.  Calendars are immutable and safe to
+ *               share between threads.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class BusinessCalendar {
+
+	private static final int SAMPLE_SHIFT = 6;
+
+	private final int firstYear;
+
+	private final int lastYear;
+
+	private final long firstDay;
+
+	// Number of days in the range
+	private final int days;
+
+	// Bit i of word i >>> 6 is set if day firstDay + i is a working day
+	private final long[] bits;
+
+	// Working days before each word; one more entry than words
+	private final int[] rank;
+
+	// Word holding working day number k << SAMPLE_SHIFT
+	private final int[] select;
+
+	private BusinessCalendar(Builder builder) {
+		firstYear = builder.firstYear;
+		lastYear = builder.lastYear;
+		firstDay = DateMath.toEpochDay(firstYear, 1, 1);
+		days = (int) (DateMath.toEpochDay(lastYear + 1, 1, 1) - firstDay);
+		Set<Long> holidays = new HashSet<Long>(builder.holidays);
+		for (int year = firstYear; year <= lastYear; year++) {
+			for (int monthDay : builder.yearly) {
+				int month = monthDay >> 5;
+				int day = monthDay & 0x1F;
+				if (day <= DateParser.daysInMonth(year, month)) {
+					holidays.add(Long.valueOf(DateMath.toEpochDay(year, month, day)));
+				}
+			}
+			if (builder.easterMonday) {
+				holidays.add(Long.valueOf(easter(year) + 1));
+			}
+		}
+		bits = new long[(days >>> 6) + 1];
+		for (int i = 0; i < days; i++) {
+			long day = firstDay + i;
+			Long key = Long.valueOf(day);
+			boolean working = builder.workingDays.contains(key)
+					|| !(builder.weekend[DateMath.dayOfWeek(day)] || holidays.contains(key));
+			if (working) {
+				bits[i >>> 6] |= 1L << i;
+			}
+		}
+		rank = new int[bits.length + 1];
+		for (int w = 0; w < bits.length; w++) {
+			rank[w + 1] = rank[w] + Long.bitCount(bits[w]);
+		}
+		int total = rank[bits.length];
+		select = new int[((total - 1) >> SAMPLE_SHIFT) + 1];
+		int w = 0;
+		for (int k = 0; k < select.length; k++) {
+			while (rank[w + 1] <= k << SAMPLE_SHIFT) {
+				w++;
+			}
+			select[k] = w;
+		}
+	}
+
+	/**
+	 * Get a builder of a new calendar, for 1900 - 2100 and with no day off.
+	 */
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * Get the Italian calendar of 1900 - 2100: Saturdays, Sundays and the national
+	 * holidays (January 1 and 6, Easter Monday, April 25, May 1, June 2, August 15,
+	 * November 1, December 8, 25 and 26) are days off.  The current holidays apply to
+	 * every year.  Add the local patron saint with <code>italy(month, day)</code>.
+	 */
+	public static BusinessCalendar italy() {
+		return italian().build();
+	}
+
+	/**
+	 * Get the Italian calendar with the holiday of a local patron saint, e.g.
+	 * <code>italy(6, 29)</code> for Rome.
+	 * @param month    1 - 12
+	 * @param day    1 - 31
+	 */
+	public static BusinessCalendar italy(int month, int day) {
+		return italian().holiday(month, day).build();
+	}
+
+	private static Builder italian() {
+		return builder().weekend(Calendar.SATURDAY, Calendar.SUNDAY).holiday(1, 1).holiday(1, 6).easterMonday()
+				.holiday(4, 25).holiday(5, 1).holiday(6, 2).holiday(8, 15).holiday(11, 1).holiday(12, 8)
+				.holiday(12, 25).holiday(12, 26);
+	}
+
+	/** Get the first year of the calendar. */
+	public int getFirstYear() {
+		return firstYear;
+	}
+
+	/** Get the last year of the calendar. */
+	public int getLastYear() {
+		return lastYear;
+	}
+
+	/**
+	 * Check whether the date of a <code>UDate</code> is a working day.
+	 */
+	public boolean isWorkingDay(UDate date) {
+		return isWorkingDay(epochDay(date));
+	}
+
+	/**
+	 * Check whether a day is a working day.
+	 * @param epochDay    Days since January 1, 1970.
+	 */
+	public boolean isWorkingDay(long epochDay) {
+		int i = index(epochDay);
+		return (bits[i >>> 6] & 1L << i) != 0;
+	}
+
+	/**
+	 * Count the working days from the date of <code>from</code>, included, to the date
+	 * of <code>to</code>, excluded; negative if <code>to</code> is before
+	 * <code>from</code>.
+	 */
+	public int workingDaysBetween(UDate from, UDate to) {
+		return workingDaysBetween(epochDay(from), epochDay(to));
+	}
+
+	/**
+	 * Count the working days from <code>from</code>, included, to <code>to</code>,
+	 * excluded; negative if <code>to</code> is before <code>from</code>.
+	 * @param from    Days since January 1, 1970.
+	 * @param to    Days since January 1, 1970; may be the day after the range.
+	 */
+	public int workingDaysBetween(long from, long to) {
+		return rank(indexOrEnd(to)) - rank(indexOrEnd(from));
+	}
+
+	/**
+	 * Get the date a number of working days after or before a date.
+	 * @param date    Start date, which does not count.
+	 * @param workingDays    Working days to add; negative to go back, 0 for the start
+	 * date itself.
+	 * @return A new date, at the time of day of <code>date</code>.
+	 */
+	public UDate addWorkingDays(UDate date, int workingDays) {
+		long day = epochDay(date);
+		return plusDays(date, addWorkingDays(day, workingDays) - day);
+	}
+
+	/**
+	 * Get the day a number of working days after or before a day.
+	 * @param epochDay    Start day, which does not count, as days since January 1, 1970.
+	 * @param workingDays    Working days to add; negative to go back, 0 for the start
+	 * day itself.
+	 * @return Days since January 1, 1970.
+	 */
+	public long addWorkingDays(long epochDay, int workingDays) {
+		int i = index(epochDay);
+		if (workingDays == 0) {
+			return epochDay;
+		}
+		long k = workingDays > 0 ? (long) rank(i + 1) + workingDays - 1 : (long) rank(i) + workingDays;
+		return firstDay + select(k);
+	}
+
+	/**
+	 * Get the date itself if it is a working day, otherwise the first working day
+	 * after it.
+	 * @return A new date, at the time of day of <code>date</code>.
+	 */
+	public UDate nextWorkingDay(UDate date) {
+		long day = epochDay(date);
+		return plusDays(date, nextWorkingDay(day) - day);
+	}
+
+	/**
+	 * Get the day itself if it is a working day, otherwise the first working day after
+	 * it.
+	 * @param epochDay    Days since January 1, 1970.
+	 * @return Days since January 1, 1970.
+	 */
+	public long nextWorkingDay(long epochDay) {
+		return firstDay + select(rank(index(epochDay)));
+	}
+
+	/**
+	 * Working days in days <code>[0, i)</code> of the range.
+	 */
+	private int rank(int i) {
+		return rank[i >>> 6] + Long.bitCount(bits[i >>> 6] & ((1L << i) - 1));
+	}
+
+	/**
+	 * Index in the range of working day number <code>k</code>, counted from 0.
+	 */
+	private int select(long k) {
+		if (k < 0 || k >= rank[bits.length]) {
+			throw new IllegalArgumentException("Outside the calendar: " + firstYear + " - " + lastYear);
+		}
+		int w = select[(int) (k >>> SAMPLE_SHIFT)];
+		while (rank[w + 1] <= k) {
+			w++;
+		}
+		long word = bits[w];
+		for (int r = (int) k - rank[w]; r > 0; r--) {
+			word &= word - 1;
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(word);
+	}
+
+	private int index(long epochDay) {
+		long i = epochDay - firstDay;
+		if (i < 0 || i >= days) {
+			throw new IllegalArgumentException("Outside the calendar " + firstYear + " - " + lastYear + ": day "
+					+ epochDay);
+		}
+		return (int) i;
+	}
+
+	private int indexOrEnd(long epochDay) {
+		return epochDay == firstDay + days ? days : index(epochDay);
+	}
+
+	private static long epochDay(UDate date) {
+		return DateMath.epochDay(DateMath.localMillis(date.getTimeZone(), date.getTimeInMillis()));
+	}
+
+	private static UDate plusDays(UDate date, long days) {
+		UDate result = UDate.newInstance(date);
+		if (days != 0) {
+			result.adjust(UDate.UNIT_DAYS, (int) days);
+		}
+		return result;
+	}
+
+	/**
+	 * Epoch day of Easter Sunday in the Gregorian calendar (anonymous Gregorian
+	 * algorithm).
+	 */
+	static long easter(int year) {
+		int a = year % 19;
+		int b = year / 100;
+		int c = year % 100;
+		int d = b / 4;
+		int e = b % 4;
+		int f = (b + 8) / 25;
+		int g = (b - f + 1) / 3;
+		int h = (19 * a + b - d - g + 15) % 30;
+		int i = c / 4;
+		int k = c % 4;
+		int l = (32 + 2 * e + 2 * i - h - k) % 7;
+		int m = (a + 11 * h + 22 * l) / 451;
+		int month = (h + l - 7 * m + 114) / 31;
+		int day = (h + l - 7 * m + 114) % 31 + 1;
+		return DateMath.toEpochDay(year, month, day);
+	}
+
+	/**
+	 * Collects the rules of a calendar.  Single working days win over weekends and
+	 * holidays.  Not thread-safe.
+	 */
+	public static final class Builder {
+
+		private int firstYear = 1900;
+		private int lastYear = 2100;
+		private final boolean[] weekend = new boolean[Calendar.SATURDAY + 1];
+		// month << 5 | day
+		private final Set<Integer> yearly = new HashSet<Integer>();
+		private boolean easterMonday;
+		private final Set<Long> holidays = new HashSet<Long>();
+		private final Set<Long> workingDays = new HashSet<Long>();
+
+		private Builder() {
+		}
+
+		/**
+		 * Set the years covered, 1900 - 2100 by default.
+		 * @param first    First year, from 1583 (Gregorian calendar).
+		 * @param last    Last year, at most 5000 years after the first.
+		 */
+		public Builder years(int first, int last) {
+			if (first < 1583 || last < first || last - first >= 5000) {
+				throw new IllegalArgumentException("Invalid years: " + first + " - " + last);
+			}
+			firstYear = first;
+			lastYear = last;
+			return this;
+		}
+
+		/**
+		 * Make days of the week days off.
+		 * @param daysOfWeek    <code>Calendar.SUNDAY</code> - <code>Calendar.SATURDAY</code>.
+		 */
+		public Builder weekend(int... daysOfWeek) {
+			for (int dayOfWeek : daysOfWeek) {
+				if (dayOfWeek < Calendar.SUNDAY || dayOfWeek > Calendar.SATURDAY) {
+					throw new IllegalArgumentException("Invalid day of week: " + dayOfWeek);
+				}
+				weekend[dayOfWeek] = true;
+			}
+			return this;
+		}
+
+		/**
+		 * Add a holiday on the same date every year; February 29 only in leap years.
+		 * @param month    1 - 12
+		 * @param day    1 - 31
+		 */
+		public Builder holiday(int month, int day) {
+			if (month < 1 || month > 12 || day < 1 || day > 31) {
+				throw new IllegalArgumentException("Invalid date: " + day + "/" + month);
+			}
+			yearly.add(Integer.valueOf(month << 5 | day));
+			return this;
+		}
+
+		/**
+		 * Make Easter Monday a holiday.
+		 */
+		public Builder easterMonday() {
+			easterMonday = true;
+			return this;
+		}
+
+		/**
+		 * Add a single holiday: the date of a <code>UDate</code>, in its time zone.
+		 */
+		public Builder holiday(UDate date) {
+			holidays.add(Long.valueOf(epochDay(date)));
+			return this;
+		}
+
+		/**
+		 * Add single holidays.
+		 */
+		public Builder holidays(Iterable<? extends UDate> dates) {
+			for (UDate date : dates) {
+				holiday(date);
+			}
+			return this;
+		}
+
+		/**
+		 * Add single holidays read from text, one date per line in
+		 * <code>UDate.formatoData</code>.  Blank lines and lines starting with '#' are
+		 * skipped.
+		 * @throws ParseException If a line is not a date.
+		 */
+		public Builder holidays(Reader in) throws IOException, ParseException {
+			BufferedReader reader = new BufferedReader(in);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				line = line.trim();
+				if (line.length() > 0 && line.charAt(0) != '#') {
+					holiday(UDate.newInstance(line));
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Make a single day a working day, even if it falls on a weekend or a holiday.
+		 */
+		public Builder workingDay(UDate date) {
+			workingDays.add(Long.valueOf(epochDay(date)));
+			return this;
+		}
+
+		/**
+		 * Build the calendar.
+		 */
+		public BusinessCalendar build() {
+			return new BusinessCalendar(this);
+		}
+	}
+}
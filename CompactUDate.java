@@ -0,0 +1,197 @@
+package util;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Title:        Compact Universal Date object.
+ * Description:  A <code>UDate</code> that keeps only the number of milliseconds since
+ *               January 1, 1970 00:00:00 GMT and a shared time zone instead of a
+ *               <code>GregorianCalendar</code>.  The date and time fields are computed
+ *               arithmetically on first use and remembered until the next
+ *               <code>adjust()</code>.
+ *
+ *               It can be used wherever a <code>UDate</code> is expected and gives the
+ *               same results; <code>cal</code> is always <code>null</code>.
+ *               Like <code>UDate</code>, it is not thread-safe.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class CompactUDate extends UDate {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private long millis;
+
+	private transient TimeZone zone;
+
+	// Remembered fields, see DateMath; 0 until computed
+	private transient long date;
+	private transient int timeOfDay;
+
+	/**
+	 *  Construct based on the current date and time.
+	 */
+	public CompactUDate() {
+		this(System.currentTimeMillis());
+	}
+
+	/**
+	 * Construct from a long value, in the default time zone.
+	 * @param longValue Number of milliseconds since January 1, 1970 00:00:00 GMT
+	 */
+	public CompactUDate(long longValue) {
+		this(longValue, DateMath.defaultZone());
+	}
+
+	/**
+	 * Construct from a long value.
+	 * @param longValue Number of milliseconds since January 1, 1970 00:00:00 GMT
+	 * @param zone    Time zone the date and time fields are computed in.
+	 */
+	public CompactUDate(long longValue, TimeZone zone) {
+		super((GregorianCalendar) null);
+		this.millis = longValue;
+		this.zone = DateMath.intern(zone);
+	}
+
+	/**
+	 * Construct from another UDate object.
+	 * @param date  Another UDate object
+	 * @return Compact copy of the UDate object, <code>null</code> if date is null.
+	 */
+	public static CompactUDate valueOf(UDate date) {
+		if (date == null) {
+			return null;
+		} else {
+			return new CompactUDate(date.getTimeInMillis(), date.getTimeZone());
+		}
+	}
+
+	/**
+	 * Get a calendar-backed copy of this date.
+	 * @return New UDate object set to the same date, time and time zone.
+	 */
+	public UDate toUDate() {
+		GregorianCalendar newCal = new GregorianCalendar(zone);
+		newCal.setTimeInMillis(millis);
+		return new UDate(newCal);
+	}
+
+	UDate copy() {
+		CompactUDate newDate = new CompactUDate(millis, zone);
+		newDate.date = date;
+		newDate.timeOfDay = timeOfDay;
+		return newDate;
+	}
+
+	TimeZone getTimeZone() {
+		return zone;
+	}
+
+	public int getMonth() { return DateMath.month(date()); }
+
+	public int getDay() { return DateMath.day(date()); }
+
+	public int getYear() { return DateMath.yearOfEra(DateMath.year(date())); }
+
+	public int getHour() { return (timeOfDay() / (int) DateMath.MILLIS_PER_HOUR) % 12; }
+
+	public int getMinute() { return (timeOfDay() / (int) DateMath.MILLIS_PER_MINUTE) % 60; }
+
+	public int getSecond() { return (timeOfDay() / (int) DateMath.MILLIS_PER_SECOND) % 60; }
+
+	public int getMillisecond() { return timeOfDay() % 1000; }
+
+	public long getTimeInMillis() { return millis; }
+
+	int get(int field) {
+		switch (field) {
+		case Calendar.YEAR:
+			return getYear();
+		case Calendar.MONTH:
+			return getMonth() - 1;
+		case Calendar.DAY_OF_MONTH:
+			return getDay();
+		case Calendar.HOUR_OF_DAY:
+			return timeOfDay() / (int) DateMath.MILLIS_PER_HOUR;
+		case Calendar.HOUR:
+			return getHour();
+		case Calendar.MINUTE:
+			return getMinute();
+		case Calendar.SECOND:
+			return getSecond();
+		case Calendar.MILLISECOND:
+			return getMillisecond();
+		case Calendar.DAY_OF_WEEK:
+			return DateMath.dayOfWeek(DateMath.epochDay(DateMath.localMillis(zone, millis)));
+		case Calendar.DAY_OF_YEAR:
+			return DateMath.dayOfYear(DateMath.epochDay(DateMath.localMillis(zone, millis)));
+		default:
+			return DateMath.get(zone, millis, field);
+		}
+	}
+
+	public Timestamp getDateAsTimestamp() {
+		return new Timestamp(millis);
+	}
+
+	public java.sql.Date getDateAsDate() {
+		return new java.sql.Date(millis);
+	}
+
+	public String getDate(String format) {
+		long start = UDateMetrics.start();
+		String result;
+		int layout = FixedDateFormat.layoutOf(format);
+		char[] buf = layout == FixedDateFormat.NONE ? null : new char[FixedDateFormat.length(layout)];
+		if (buf != null && FixedDateFormat.format(layout, millis, DateMath.defaultZone(), buf, 0) >= 0) {
+			result = new String(buf);
+		} else {
+			result = DateFormatCache.format(format, new Date(millis));
+		}
+		UDateMetrics.record(UDateMetrics.GET_DATE, format, start, true);
+		return result;
+	}
+
+	public void adjust(short unit, int amount) {
+		int field = calendarField(unit);
+		if (field >= 0) {
+			millis = DateMath.add(zone, millis, field, amount);
+			date = 0;
+		}
+	}
+
+	private long date() {
+		if (date == 0) {
+			long local = DateMath.localMillis(zone, millis);
+			timeOfDay = DateMath.millisOfDay(local);
+			date = DateMath.civil(DateMath.epochDay(local));
+		}
+		return date;
+	}
+
+	private int timeOfDay() {
+		date();
+		return timeOfDay;
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeObject(zone.getID());
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		zone = DateMath.intern(TimeZone.getTimeZone((String) in.readObject()));
+	}
+}
@@ -0,0 +1,228 @@
+package util;
+
+import java.nio.LongBuffer;
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * Title:        Batch date formatting.
+ * Description:  Formats a whole column of dates, given as milliseconds since January 1,
+ *               1970 00:00:00 GMT, into one contiguous <code>char[]</code> or
+ *               <code>byte[]</code> (ASCII), without a <code>UDate</code>, a calendar or a
+ *               <code>String</code> per row.  Row <code>i</code> of the result is found
+ *               between <code>offsets[i]</code> and <code>offsets[i + 1]</code>.
+ *
+ *               The <code>UDate</code> pattern constants and <code>dd/MM/yyyy</code> are
+ *               written by <code>FixedDateFormat</code>; the date fields are computed once
+ *               per run of consecutive rows that fall on the same day.  Any other
+ *               pattern, and years outside 1 - 9999, go through one reused
+ *               <code>SimpleDateFormat</code>.  Output is the same as
+ *               <code>UDate.getDate(pattern)</code> row by row.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class DateBatchFormat {
+
+	private DateBatchFormat() {
+	}
+
+	/**
+	 * Format all the dates in the default time zone.
+	 * @param millis    Dates as milliseconds since January 1, 1970 00:00:00 GMT
+	 * @param pattern    Date format (e.g. UDate.TIMESTAMP)
+	 * @param offsets    Receives the start of every row and the end of the last one;
+	 * at least <code>millis.length + 1</code> long.
+	 * @return The formatted rows.
+	 */
+	public static char[] format(long[] millis, String pattern, int[] offsets) {
+		return format(millis, 0, millis.length, pattern, DateMath.defaultZone(), offsets);
+	}
+
+	/**
+	 * Format a range of dates.
+	 * @param millis    Dates as milliseconds since January 1, 1970 00:00:00 GMT
+	 * @param off    First date to format.
+	 * @param len    Number of dates to format.
+	 * @param pattern    Date format (e.g. UDate.TIMESTAMP)
+	 * @param zone    Time zone the dates are shown in.
+	 * @param offsets    Receives the start of every row and the end of the last one;
+	 * at least <code>len + 1</code> long.
+	 * @return The formatted rows.
+	 */
+	public static char[] format(long[] millis, int off, int len, String pattern, TimeZone zone, int[] offsets) {
+		return format(LongBuffer.wrap(millis, off, len), pattern, zone, offsets);
+	}
+
+	/**
+	 * Format the dates between the position and the limit of a buffer.  The position
+	 * of the buffer is not changed.
+	 * @param millis    Dates as milliseconds since January 1, 1970 00:00:00 GMT
+	 * @param pattern    Date format (e.g. UDate.TIMESTAMP)
+	 * @param zone    Time zone the dates are shown in.
+	 * @param offsets    Receives the start of every row and the end of the last one;
+	 * at least <code>millis.remaining() + 1</code> long.
+	 * @return The formatted rows.
+	 */
+	public static char[] format(LongBuffer millis, String pattern, TimeZone zone, int[] offsets) {
+		Writer writer = new Writer(pattern, zone, millis.remaining());
+		try {
+			int pos = 0;
+			for (int i = 0, n = millis.remaining(), base = millis.position(); i < n; i++) {
+				offsets[i] = pos;
+				pos = writer.write(millis.get(base + i), pos);
+			}
+			offsets[millis.remaining()] = pos;
+			return pos == writer.out.length ? writer.out : Arrays.copyOf(writer.out, pos);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Format a range of dates as ASCII bytes.
+	 * @see #format(long[], int, int, String, TimeZone, int[])
+	 */
+	public static byte[] formatAscii(long[] millis, int off, int len, String pattern, TimeZone zone, int[] offsets) {
+		return formatAscii(LongBuffer.wrap(millis, off, len), pattern, zone, offsets);
+	}
+
+	/**
+	 * Format the dates between the position and the limit of a buffer as ASCII bytes.
+	 * Characters outside ASCII, which only patterns with text fields can produce, are
+	 * written as '?'.
+	 * @see #format(LongBuffer, String, TimeZone, int[])
+	 */
+	public static byte[] formatAscii(LongBuffer millis, String pattern, TimeZone zone, int[] offsets) {
+		Writer writer = new Writer(pattern, zone, 1);
+		try {
+			int n = millis.remaining();
+			int base = millis.position();
+			byte[] out = new byte[writer.width > 0 ? writer.width * n : 16 * n];
+			int pos = 0;
+			for (int i = 0; i < n; i++) {
+				offsets[i] = pos;
+				int len = writer.write(millis.get(base + i), 0);
+				if (pos + len > out.length) {
+					out = Arrays.copyOf(out, Math.max(out.length * 2, pos + len));
+				}
+				char[] row = writer.out;
+				for (int k = 0; k < len; k++) {
+					char c = row[k];
+					out[pos++] = c < 128 ? (byte) c : (byte) '?';
+				}
+			}
+			offsets[n] = pos;
+			return pos == out.length ? out : Arrays.copyOf(out, pos);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Writes rows one after the other into <code>out</code>, remembering the fields of
+	 * the last day seen.
+	 */
+	private static final class Writer {
+		final int layout;
+		final int width;
+		final TimeZone zone;
+		char[] out;
+
+		// Day cache: instants [dayStart, dayEnd) share year, month, day and offset
+		long dayStart = 1;
+		long dayEnd = 0;
+		// Local midnight of the cached day, as an instant at the cached offset
+		long midnight;
+		int year;
+		int month;
+		int day;
+
+		// Fallback for other patterns and years
+		final String pattern;
+		SimpleDateFormat sdf;
+		TimeZone previousZone;
+		Date date;
+		StringBuffer sb;
+		FieldPosition field;
+
+		Writer(String pattern, TimeZone zone, int rows) {
+			this.pattern = pattern;
+			this.zone = zone;
+			this.layout = FixedDateFormat.layoutOf(pattern);
+			this.width = layout == FixedDateFormat.NONE ? 0 : FixedDateFormat.length(layout);
+			this.out = new char[Math.max(width > 0 ? width * rows : 16 * rows, 32)];
+		}
+
+		int write(long millis, int pos) {
+			if (layout != FixedDateFormat.NONE) {
+				if (millis < dayStart || millis >= dayEnd) {
+					startDay(millis);
+				}
+				if (FixedDateFormat.supportsYear(year)) {
+					ensure(pos + width);
+					int time = (int) (millis - midnight);
+					return FixedDateFormat.format(layout, year, month, day, time / (int) DateMath.MILLIS_PER_HOUR,
+							(time / (int) DateMath.MILLIS_PER_MINUTE) % 60, (time / (int) DateMath.MILLIS_PER_SECOND) % 60,
+							out, pos);
+				}
+			}
+			return fallback(millis, pos);
+		}
+
+		private void startDay(long millis) {
+			int offset = DateMath.offset(zone, millis);
+			long local = millis + offset;
+			long epochDay = DateMath.epochDay(local);
+			long civil = DateMath.civil(epochDay);
+			year = DateMath.year(civil);
+			month = DateMath.month(civil);
+			day = DateMath.day(civil);
+			long start = epochDay * DateMath.MILLIS_PER_DAY - offset;
+			long end = start + DateMath.MILLIS_PER_DAY;
+			midnight = start;
+			if (DateMath.offset(zone, start) == offset && DateMath.offset(zone, end - 1) == offset) {
+				dayStart = start;
+				dayEnd = end;
+			} else {
+				// offset changes during this day: cache the part of the day with this offset
+				ZoneTable table = ZoneTable.get(zone);
+				dayStart = table == null ? millis : Math.max(start, table.runStart(millis));
+				dayEnd = table == null ? millis + 1 : Math.min(end, table.runEnd(millis));
+			}
+		}
+
+		private int fallback(long millis, int pos) {
+			if (sdf == null) {
+				sdf = DateFormatCache.get(pattern);
+				previousZone = sdf.getTimeZone();
+				sdf.setTimeZone(zone);
+				date = new Date();
+				sb = new StringBuffer(32);
+				field = new FieldPosition(0);
+			}
+			date.setTime(millis);
+			sb.setLength(0);
+			sdf.format(date, sb, field);
+			int len = sb.length();
+			ensure(pos + len);
+			sb.getChars(0, len, out, pos);
+			return pos + len;
+		}
+
+		private void ensure(int capacity) {
+			if (capacity > out.length) {
+				out = Arrays.copyOf(out, Math.max(out.length * 2, capacity));
+			}
+		}
+
+		void close() {
+			if (sdf != null) {
+				sdf.setTimeZone(previousZone);
+			}
+		}
+	}
+}
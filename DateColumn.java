@@ -0,0 +1,559 @@
+package util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * Title:        Memory-mapped date column.
+ * Description:  A column of dates kept in a file as primitive values, either day numbers
+ *               (<code>DAYS</code>, an <code>int</code> per row) or milliseconds since
+ *               January 1, 1970 00:00:00 GMT (<code>MILLIS</code>, a <code>long</code> per
+ *               row), and read back through a memory mapping.  The heap holds only the
+ *               block index, whatever the number of rows, and <code>UDate</code> objects
+ *               are created only by <code>get()</code>.  Reopening a column maps the
+ *               file; nothing is parsed or rebuilt.
+ *
+ *               Rows are grouped in blocks of <code>blockRows</code>; for every block the
+ *               index keeps the smallest and largest value and the number of non-null
+ *               values.  A range scan skips the blocks whose values are all outside the
+ *               range, and a count adds whole blocks that are all inside it, so data
+ *               sorted or clustered by date is scanned in time proportional to the
+ *               matching rows.
+ *
+ *      Offset    Content (little-endian)
+ *      ------    -------
+ *      0         Magic "UDC1", format version, unit, block rows: 4 ints
+ *      16        Number of rows, offset of the index: 2 longs
+ *      32        Length of the time zone ID: int
+ *      64        Values, 4 or 8 bytes per row; a null row holds the smallest int or long
+ *      index     Per block: minimum, maximum, number of non-null values: 3 longs
+ *      zone      Time zone ID, ASCII
+ *
+ *               Columns are written once with a <code>Writer</code> from
+ *               <code>create()</code> and are read only afterwards.  A column has one
+ *               time zone, stored by ID: day numbers are counted in it, whatever the zone
+ *               of the dates written, and <code>get()</code> returns them at midnight in
+ *               it, so a date of that zone reads back as written.  Columns of the first
+ *               format version have no zone and are read in the default time zone.
+ *               Reading is safe for use by multiple threads.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class DateColumn implements Closeable {
+
+	/** Unit of a column of day numbers (days since January 1, 1970). */
+	public static final int DAYS = 0;
+
+	/** Unit of a column of milliseconds since January 1, 1970 00:00:00 GMT. */
+	public static final int MILLIS = 1;
+
+	/** Value returned by <code>getLong()</code> for a null row. */
+	public static final long NULL = Long.MIN_VALUE;
+
+	/** Rows per block used by <code>create(Path, int)</code>. */
+	public static final int DEFAULT_BLOCK_ROWS = 4096;
+
+	private static final int MAGIC = 0x55444331;
+
+	private static final int VERSION = 2;
+
+	// Version without a time zone
+	private static final int VERSION_1 = 1;
+
+	private static final int HEADER = 64;
+
+	// Values are mapped in segments of 1 GB; a block never spans two segments
+	private static final int SEGMENT_SHIFT = 30;
+	private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+	private static final int MIN_BLOCK_ROWS = 64;
+	private static final int MAX_BLOCK_ROWS = 1 << 20;
+
+	// Index entry fields
+	private static final int MIN = 0;
+	private static final int MAX = 1;
+	private static final int VALUES = 2;
+	private static final int ENTRY = 3;
+
+	/**
+	 * Receives the rows of a scan, in row order.
+	 */
+	public interface RowVisitor {
+
+		/**
+		 * A row whose value is in the range.
+		 * @param row    Row number, 0 for the first one.
+		 * @param value    Day number or milliseconds, as the unit of the column.
+		 */
+		void row(long row, long value);
+	}
+
+	private final Path file;
+
+	private final int unit;
+
+	private final TimeZone zone;
+
+	private final int width;
+
+	private final int blockRows;
+
+	private final int blockShift;
+
+	private final long rows;
+
+	private final long[] index;
+
+	private volatile ByteBuffer[] segments;
+
+	private DateColumn(Path file, int unit, TimeZone zone, int blockRows, long rows, long[] index,
+			ByteBuffer[] segments) {
+		this.file = file;
+		this.unit = unit;
+		this.zone = zone;
+		this.width = width(unit);
+		this.blockRows = blockRows;
+		this.blockShift = Integer.numberOfTrailingZeros(blockRows);
+		this.rows = rows;
+		this.index = index;
+		this.segments = segments;
+	}
+
+	/**
+	 * Start writing a column with <code>DEFAULT_BLOCK_ROWS</code> rows per block, in the
+	 * default time zone.
+	 * @see #create(Path, int, int, TimeZone)
+	 */
+	public static Writer create(Path file, int unit) throws IOException {
+		return create(file, unit, DEFAULT_BLOCK_ROWS, TimeZone.getDefault());
+	}
+
+	/**
+	 * Start writing a column in the default time zone.
+	 * @see #create(Path, int, int, TimeZone)
+	 */
+	public static Writer create(Path file, int unit, int blockRows) throws IOException {
+		return create(file, unit, blockRows, TimeZone.getDefault());
+	}
+
+	/**
+	 * Start writing a column, replacing the file if it exists.
+	 * @param file    File of the column.
+	 * @param unit    <code>DAYS</code> or <code>MILLIS</code>.
+	 * @param blockRows    Rows per index block, a power of two from 64 to 1048576.
+	 * @param zone    Time zone day numbers are counted in, stored by ID; it must be the
+	 * zone <code>TimeZone.getTimeZone()</code> gives for its ID, so that the column can be
+	 * opened again.
+	 * @return A writer; the column is complete when it is closed.
+	 * @throws IOException
+	 * @throws IllegalArgumentException If the zone has an unknown ID or other rules than
+	 * its ID gives.
+	 */
+	public static Writer create(Path file, int unit, int blockRows, TimeZone zone) throws IOException {
+		width(unit);
+		if (Integer.bitCount(blockRows) != 1 || blockRows < MIN_BLOCK_ROWS || blockRows > MAX_BLOCK_ROWS) {
+			throw new IllegalArgumentException("Invalid block rows: " + blockRows);
+		}
+		TimeZone byId = TimeZone.getTimeZone(zone.getID());
+		if (!byId.getID().equals(zone.getID()) || !byId.hasSameRules(zone)) {
+			throw new IllegalArgumentException("Time zone not stored by ID: " + zone.getID());
+		}
+		return new Writer(file, unit, blockRows, DateMath.intern(zone));
+	}
+
+	/**
+	 * Open a column written by a <code>Writer</code>.
+	 * @param file    File of the column.
+	 * @return The column, mapped read-only.
+	 * @throws IOException If the file is not a complete column.
+	 */
+	public static DateColumn open(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER) {
+				throw new IOException("Not a date column: " + file);
+			}
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER).order(ByteOrder.LITTLE_ENDIAN);
+			int version = header.getInt(4);
+			int unit = header.getInt(8);
+			int blockRows = header.getInt(12);
+			long rows = header.getLong(16);
+			long indexOffset = header.getLong(24);
+			int zoneLength = version == VERSION_1 ? 0 : header.getInt(32);
+			if (header.getInt(0) != MAGIC || (version != VERSION && version != VERSION_1)
+					|| (unit != DAYS && unit != MILLIS) || Integer.bitCount(blockRows) != 1 || rows < 0
+					|| zoneLength < 0) {
+				throw new IOException("Not a date column: " + file);
+			}
+			long dataBytes = rows * width(unit);
+			long blocks = (rows + blockRows - 1) / blockRows;
+			long zoneOffset = indexOffset + blocks * ENTRY * 8;
+			if (indexOffset != HEADER + dataBytes || zoneOffset + zoneLength != size) {
+				throw new IOException("Incomplete date column: " + file);
+			}
+			TimeZone zone = DateMath.defaultZone();
+			if (version != VERSION_1) {
+				byte[] id = new byte[zoneLength];
+				channel.map(FileChannel.MapMode.READ_ONLY, zoneOffset, zoneLength).get(id);
+				zone = zone(new String(id, StandardCharsets.US_ASCII), file);
+			}
+			ByteBuffer[] segments = new ByteBuffer[(int) ((dataBytes + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+			for (int i = 0; i < segments.length; i++) {
+				long start = (long) i << SEGMENT_SHIFT;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + start,
+						Math.min(SEGMENT_MASK + 1, dataBytes - start)).order(ByteOrder.LITTLE_ENDIAN);
+			}
+			long[] index = new long[(int) blocks * ENTRY];
+			if (index.length > 0) {
+				channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, index.length * 8L)
+						.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(index);
+			}
+			return new DateColumn(file, unit, zone, blockRows, rows, index, segments);
+		}
+	}
+
+	/** Get the file of the column. */
+	public Path getFile() {
+		return file;
+	}
+
+	/** Get the unit of the column, <code>DAYS</code> or <code>MILLIS</code>. */
+	public int getUnit() {
+		return unit;
+	}
+
+	/** Get the time zone day numbers are counted in. */
+	public TimeZone getTimeZone() {
+		return (TimeZone) zone.clone();
+	}
+
+	/** Get the number of rows per index block. */
+	public int getBlockRows() {
+		return blockRows;
+	}
+
+	/** Get the number of rows. */
+	public long size() {
+		return rows;
+	}
+
+	/**
+	 * Get the value of a row.
+	 * @param row    0 - <code>size() - 1</code>
+	 * @return Day number or milliseconds, as the unit of the column; <code>NULL</code> for
+	 * a null row.
+	 */
+	public long getLong(long row) {
+		checkRow(row);
+		long offset = row * width;
+		return value(segment(offset), (int) (offset & SEGMENT_MASK));
+	}
+
+	/**
+	 * Check whether a row is null.
+	 * @param row    0 - <code>size() - 1</code>
+	 */
+	public boolean isNull(long row) {
+		return getLong(row) == NULL;
+	}
+
+	/**
+	 * Get the date of a row.
+	 * @param row    0 - <code>size() - 1</code>
+	 * @return A new date in the time zone of the column, at midnight for a column of
+	 * days; <code>null</code> for a null row.
+	 */
+	public UDate get(long row) {
+		long value = getLong(row);
+		if (value == NULL) {
+			return null;
+		}
+		return new CompactUDate(unit == DAYS ? DateMath.startOfDay(zone, value) : value, zone);
+	}
+
+	/**
+	 * Count the rows between two dates, taken as day numbers in the time zone of the
+	 * column for a column of days.
+	 * @see #count(long, long)
+	 */
+	public long count(UDate from, UDate to) {
+		return count(value(unit, zone, from), value(unit, zone, to));
+	}
+
+	/**
+	 * Count the rows whose value is between two values, both included.  Blocks entirely
+	 * inside the range are counted from the index without being read.
+	 * @param from    Smallest value, as the unit of the column.
+	 * @param to    Largest value, as the unit of the column.
+	 */
+	public long count(long from, long to) {
+		long count = 0;
+		for (int block = 0; block * ENTRY < index.length; block++) {
+			int entry = block * ENTRY;
+			if (index[entry + VALUES] == 0 || index[entry + MAX] < from || index[entry + MIN] > to) {
+				continue;
+			}
+			if (index[entry + MIN] >= from && index[entry + MAX] <= to) {
+				count += index[entry + VALUES];
+			} else {
+				count += scanBlock(block, from, to, null);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Visit the rows between two dates, taken as day numbers in the time zone of the
+	 * column for a column of days.
+	 * @see #scan(long, long, RowVisitor)
+	 */
+	public long scan(UDate from, UDate to, RowVisitor visitor) {
+		return scan(value(unit, zone, from), value(unit, zone, to), visitor);
+	}
+
+	/**
+	 * Visit the rows whose value is between two values, both included, in row order.
+	 * Blocks entirely outside the range are not read.
+	 * @param from    Smallest value, as the unit of the column.
+	 * @param to    Largest value, as the unit of the column.
+	 * @param visitor    Receives the rows.
+	 * @return Number of rows visited.
+	 */
+	public long scan(long from, long to, RowVisitor visitor) {
+		long count = 0;
+		for (int block = 0; block * ENTRY < index.length; block++) {
+			int entry = block * ENTRY;
+			if (index[entry + VALUES] != 0 && index[entry + MAX] >= from && index[entry + MIN] <= to) {
+				count += scanBlock(block, from, to, visitor);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Release the column.  The mapping itself is released when it is garbage collected.
+	 */
+	public void close() {
+		segments = null;
+	}
+
+	private long scanBlock(int block, long from, long to, RowVisitor visitor) {
+		long first = (long) block << blockShift;
+		long end = Math.min(first + blockRows, rows);
+		long offset = first * width;
+		ByteBuffer segment = segment(offset);
+		int pos = (int) (offset & SEGMENT_MASK);
+		long count = 0;
+		for (long row = first; row < end; row++, pos += width) {
+			long value = value(segment, pos);
+			// null rows never match
+			if (value >= from && value <= to && value != NULL) {
+				count++;
+				if (visitor != null) {
+					visitor.row(row, value);
+				}
+			}
+		}
+		return count;
+	}
+
+	private ByteBuffer segment(long offset) {
+		ByteBuffer[] mapped = segments;
+		if (mapped == null) {
+			throw new IllegalStateException("Closed: " + file);
+		}
+		return mapped[(int) (offset >>> SEGMENT_SHIFT)];
+	}
+
+	private long value(ByteBuffer segment, int pos) {
+		if (width == 4) {
+			int day = segment.getInt(pos);
+			return day == Integer.MIN_VALUE ? NULL : day;
+		}
+		return segment.getLong(pos);
+	}
+
+	private void checkRow(long row) {
+		if (row < 0 || row >= rows) {
+			throw new IndexOutOfBoundsException("Row: " + row + ", size: " + rows);
+		}
+	}
+
+	private static int width(int unit) {
+		if (unit == DAYS) {
+			return 4;
+		}
+		if (unit == MILLIS) {
+			return 8;
+		}
+		throw new IllegalArgumentException("Invalid unit: " + unit);
+	}
+
+	/**
+	 * Value of a date in a unit: its day number in a time zone, or its milliseconds.
+	 */
+	private static long value(int unit, TimeZone zone, UDate date) {
+		if (date == null) {
+			return NULL;
+		}
+		long millis = date.getTimeInMillis();
+		return unit == DAYS ? DateMath.epochDay(DateMath.localMillis(zone, millis)) : millis;
+	}
+
+	/**
+	 * Get the shared time zone of a stored ID.
+	 * @throws IOException If the ID is not known.
+	 */
+	private static TimeZone zone(String id, Path file) throws IOException {
+		TimeZone zone = TimeZone.getTimeZone(id);
+		if (!zone.getID().equals(id)) {
+			throw new IOException("Unknown time zone " + id + ": " + file);
+		}
+		return DateMath.intern(zone);
+	}
+
+	/**
+	 * Appends rows to a new column.  Values are written through a buffer and the index
+	 * and header when the writer is closed; until then the file is not a valid column.
+	 * Not thread-safe.
+	 */
+	public static final class Writer implements Closeable {
+
+		private static final int BUFFER = 64 << 10;
+
+		private final FileChannel channel;
+		private final int unit;
+		private final int blockRows;
+		private final TimeZone zone;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+
+		private long rows;
+		private long[] index = new long[64 * ENTRY];
+		private int blocks;
+		private long min = Long.MAX_VALUE;
+		private long max = Long.MIN_VALUE;
+		private long values;
+
+		private Writer(Path file, int unit, int blockRows, TimeZone zone) throws IOException {
+			this.unit = unit;
+			this.blockRows = blockRows;
+			this.zone = zone;
+			this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+			channel.position(HEADER);
+		}
+
+		/**
+		 * Append a date: its day number in the time zone of the column for a column of days.
+		 * @param date    Date, <code>null</code> for a null row.
+		 */
+		public void add(UDate date) throws IOException {
+			add(value(unit, zone, date));
+		}
+
+		/**
+		 * Append a value.
+		 * @param value    Day number or milliseconds, as the unit of the column;
+		 * <code>NULL</code> for a null row.
+		 */
+		public void add(long value) throws IOException {
+			if (unit == DAYS && value != NULL && (value <= Integer.MIN_VALUE || value > Integer.MAX_VALUE)) {
+				throw new IllegalArgumentException("Day number out of range: " + value);
+			}
+			if (buffer.remaining() < 8) {
+				flush();
+			}
+			if (unit == DAYS) {
+				buffer.putInt(value == NULL ? Integer.MIN_VALUE : (int) value);
+			} else {
+				buffer.putLong(value);
+			}
+			if (value != NULL) {
+				min = Math.min(min, value);
+				max = Math.max(max, value);
+				values++;
+			}
+			if (++rows % blockRows == 0) {
+				endBlock();
+			}
+		}
+
+		/** Get the number of rows written so far. */
+		public long size() {
+			return rows;
+		}
+
+		/**
+		 * Write the index, the time zone and the header and close the file.
+		 */
+		public void close() throws IOException {
+			if (!channel.isOpen()) {
+				return;
+			}
+			try {
+				if (rows % blockRows != 0) {
+					endBlock();
+				}
+				flush();
+				long indexOffset = channel.position();
+				for (int i = 0; i < blocks * ENTRY; i++) {
+					if (buffer.remaining() < 8) {
+						flush();
+					}
+					buffer.putLong(index[i]);
+				}
+				byte[] id = zone.getID().getBytes(StandardCharsets.US_ASCII);
+				for (int i = 0; i < id.length; i++) {
+					if (!buffer.hasRemaining()) {
+						flush();
+					}
+					buffer.put(id[i]);
+				}
+				flush();
+				buffer.putInt(MAGIC).putInt(VERSION).putInt(unit).putInt(blockRows).putLong(rows).putLong(indexOffset)
+						.putInt(id.length);
+				while (buffer.position() < HEADER) {
+					buffer.put((byte) 0);
+				}
+				buffer.flip();
+				long pos = 0;
+				while (buffer.hasRemaining()) {
+					pos += channel.write(buffer, pos);
+				}
+				buffer.clear();
+			} finally {
+				channel.close();
+			}
+		}
+
+		private void endBlock() {
+			if ((blocks + 1) * ENTRY > index.length) {
+				index = Arrays.copyOf(index, index.length * 2);
+			}
+			int entry = blocks++ * ENTRY;
+			index[entry + MIN] = min;
+			index[entry + MAX] = max;
+			index[entry + VALUES] = values;
+			min = Long.MAX_VALUE;
+			max = Long.MIN_VALUE;
+			values = 0;
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+}
@@ -0,0 +1,330 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.Date;
+
+/**
+ * Title:        Streaming date column reader.
+ * Description:  Extracts one date column from a delimited flat file, read through a
+ *               memory-mapped <code>FileChannel</code> or any
+ *               <code>ReadableByteChannel</code>, and hands every row to a
+ *               <code>Sink</code> as a day number (days since January 1, 1970).  Dates are
+ *               normalized by <code>DateNormalizer</code> and parsed by
+ *               <code>DateParser</code> straight from the bytes: no line, field or date
+ *               <code>String</code> is created per row.
+ *
+ *               Every field gets the outcome of
+ *               <code>UDate.ctrlData(UDate.formatta(field))</code> on the same line read
+ *               with <code>BufferedReader.readLine()</code>: a date, <code>null</code>
+ *               (reported as empty) or a <code>ParseException</code> (reported as invalid).
+ *               Shapes the parser does not decide, and a <code>formatoData</code> other
+ *               than <code>dd/MM/yyyy</code>, go through <code>ctrlData</code> itself.
+ *
+ *               Lines end with '\n' or "\r\n"; fields are split on a single delimiter
+ *               byte, without quoting.  Bytes are read as ISO-8859-1, so UTF-8 input gives
+ *               the same dates as long as the date column is ASCII.
+ *               Not thread-safe; use one reader per thread.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class DateColumnReader {
+
+	/**
+	 * Receives the rows, in file order.  Line numbers start at 1 and count header lines.
+	 */
+	public interface Sink {
+
+		/**
+		 * A valid date.
+		 * @param line    Line number.
+		 * @param epochDay    Days since January 1, 1970; see <code>toMillis(long)</code>.
+		 */
+		void date(long line, long epochDay);
+
+		/**
+		 * An empty field, a field <code>formatta</code> does not recognize, or a line
+		 * without the column.
+		 * @param line    Line number.
+		 */
+		void empty(long line);
+
+		/**
+		 * A field <code>ctrlData</code> rejects.
+		 * @param line    Line number.
+		 */
+		void invalid(long line);
+	}
+
+	private static final int MAPPED_WINDOW = 64 << 20;
+
+	private static final int CHANNEL_BUFFER = 1 << 20;
+
+	private static final double MEGABYTE = 1 << 20;
+
+	// Field lengths formatta recognizes
+	private static final int MIN_FIELD = 6;
+	private static final int MAX_FIELD = 19;
+
+	private final byte delimiter;
+
+	private final int column;
+
+	private int headerLines;
+
+	// Per-row scratch
+	private final byte[] field = new byte[MAX_FIELD];
+	private final byte[] normalized = new byte[DateNormalizer.MAX_LENGTH];
+	private final DateParser.Result result = new DateParser.Result();
+	private boolean fastPath;
+
+	// Statistics of the last read
+	private long line;
+	private long bytesRead;
+	private long elapsedNanos;
+
+	/**
+	 * Construct a reader.
+	 * @param delimiter    Field delimiter, e.g. ';'.  Must not be '\n' or '\r'.
+	 * @param column    Index of the date column, 0 for the first one.
+	 */
+	public DateColumnReader(char delimiter, int column) {
+		if (delimiter > 0xFF || delimiter == '\n' || delimiter == '\r') {
+			throw new IllegalArgumentException("Invalid delimiter: " + (int) delimiter);
+		}
+		if (column < 0) {
+			throw new IllegalArgumentException("Invalid column: " + column);
+		}
+		this.delimiter = (byte) delimiter;
+		this.column = column;
+	}
+
+	/**
+	 * Set the number of lines to skip at the start of the input, 0 by default.
+	 */
+	public void setHeaderLines(int headerLines) {
+		this.headerLines = headerLines;
+	}
+
+	/**
+	 * Get the number of lines to skip at the start of the input.
+	 */
+	public int getHeaderLines() {
+		return headerLines;
+	}
+
+	/**
+	 * Read a file through memory-mapped windows.
+	 * @param file    File to read.
+	 * @param sink    Receives the rows.
+	 * @return Number of lines read, header included.
+	 * @throws IOException
+	 */
+	public long read(Path file, Sink sink) throws IOException {
+		start();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			long pos = 0;
+			int window = MAPPED_WINDOW;
+			while (pos < size) {
+				int len = (int) Math.min(window, size - pos);
+				boolean last = pos + len == size;
+				ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+				int consumed = lines(buf, len, last, sink);
+				if (consumed == 0) {
+					// a line longer than the window
+					if (window == Integer.MAX_VALUE) {
+						throw new IOException("Line too long at line " + (line + 1));
+					}
+					window = (int) Math.min(2L * window, Integer.MAX_VALUE);
+				}
+				pos += consumed;
+			}
+		} finally {
+			stop();
+		}
+		return line;
+	}
+
+	/**
+	 * Read a channel to its end.  The channel is not closed.
+	 * @param channel    Channel to read.
+	 * @param sink    Receives the rows.
+	 * @return Number of lines read, header included.
+	 * @throws IOException
+	 */
+	public long read(ReadableByteChannel channel, Sink sink) throws IOException {
+		start();
+		try {
+			ByteBuffer buf = ByteBuffer.allocate(CHANNEL_BUFFER);
+			boolean last = false;
+			while (!last) {
+				last = channel.read(buf) < 0;
+				if (!last && buf.hasRemaining()) {
+					continue;
+				}
+				buf.flip();
+				int consumed = lines(buf, buf.limit(), last, sink);
+				buf.position(consumed);
+				if (consumed == 0 && buf.limit() == buf.capacity()) {
+					// a line longer than the buffer
+					ByteBuffer larger = ByteBuffer.allocate(buf.capacity() * 2);
+					larger.put(buf);
+					buf = larger;
+				} else {
+					buf.compact();
+				}
+			}
+		} finally {
+			stop();
+		}
+		return line;
+	}
+
+	/**
+	 * Get the number of lines read by the last <code>read</code>, header included.
+	 */
+	public long getLines() {
+		return line;
+	}
+
+	/**
+	 * Get the number of bytes read by the last <code>read</code>.
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+	/**
+	 * Get the duration of the last <code>read</code>, sink included, in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * Get the throughput of the last <code>read</code> in MB (2^20 bytes) per second.
+	 */
+	public double getMegabytesPerSecond() {
+		if (elapsedNanos <= 0) {
+			return 0;
+		}
+		return bytesRead / MEGABYTE / (elapsedNanos / 1e9);
+	}
+
+	/**
+	 * Get the instant <code>ctrlData</code> returns for a day: local midnight in the
+	 * default time zone.
+	 * @param epochDay    Days since January 1, 1970, as passed to the sink.
+	 * @return Milliseconds since January 1, 1970 00:00:00 GMT
+	 */
+	public static long toMillis(long epochDay) {
+		return DateMath.startOfDay(DateMath.defaultZone(), epochDay);
+	}
+
+	private void start() {
+		line = 0;
+		bytesRead = 0;
+		elapsedNanos = System.nanoTime();
+		fastPath = "dd/MM/yyyy".equals(UDate.formatoData);
+	}
+
+	private void stop() {
+		elapsedNanos = System.nanoTime() - elapsedNanos;
+	}
+
+	/**
+	 * Hand the complete lines in <code>[0, limit)</code> to the sink.
+	 * @param last    Whether the input ends at <code>limit</code>, so that a final line
+	 * without '\n' is complete.
+	 * @return Number of bytes consumed: up to the end of the last complete line.
+	 */
+	private int lines(ByteBuffer buf, int limit, boolean last, Sink sink) {
+		int start = 0;
+		while (start < limit) {
+			int end = start;
+			while (end < limit && buf.get(end) != '\n') {
+				end++;
+			}
+			if (end == limit && !last) {
+				break;
+			}
+			int next = end < limit ? end + 1 : end;
+			if (end > start && buf.get(end - 1) == '\r') {
+				end--;
+			}
+			line++;
+			if (line > headerLines) {
+				row(buf, start, end, sink);
+			}
+			start = next;
+		}
+		bytesRead += start;
+		return start;
+	}
+
+	private void row(ByteBuffer buf, int start, int end, Sink sink) {
+		int from = start;
+		for (int i = 0; i < column; i++) {
+			while (from < end && buf.get(from) != delimiter) {
+				from++;
+			}
+			if (from == end) {
+				sink.empty(line);
+				return;
+			}
+			from++;
+		}
+		int to = from;
+		while (to < end && buf.get(to) != delimiter) {
+			to++;
+		}
+		int len = to - from;
+		if (len < MIN_FIELD || len > MAX_FIELD) {
+			sink.empty(line);
+			return;
+		}
+		for (int i = 0; i < len; i++) {
+			field[i] = buf.get(from + i);
+		}
+		int n = DateNormalizer.normalize(field, 0, len, normalized, 0);
+		if (n == 0) {
+			sink.empty(line);
+			return;
+		}
+		int status = fastPath ? DateParser.parseData(normalized, 0, n, result) : DateParser.UNSUPPORTED;
+		switch (status) {
+		case DateParser.OK:
+			sink.date(line, DateMath.toEpochDay(result.getYear(), result.getMonth(), result.getDay()));
+			break;
+		case DateParser.MALFORMED:
+		case DateParser.INVALID:
+			sink.invalid(line);
+			break;
+		default:
+			fallback(n, sink);
+		}
+	}
+
+	private void fallback(int n, Sink sink) {
+		Date date;
+		try {
+			date = UDate.ctrlData(new String(normalized, 0, n, StandardCharsets.ISO_8859_1));
+		} catch (ParseException e) {
+			sink.invalid(line);
+			return;
+		}
+		if (date == null) {
+			sink.empty(line);
+		} else {
+			sink.date(line, DateMath.epochDay(DateMath.localMillis(DateMath.defaultZone(), date.getTime())));
+		}
+	}
+}
@@ -0,0 +1,154 @@
+package util;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Title:        Registry of compiled date formats.
+ * Description:  Keeps one compiled <code>SimpleDateFormat</code> per pattern and per thread,
+ *               so that <code>UDate</code> no longer compiles its pattern on every call.
+ *               The registry is keyed by pattern and bounded to <code>MAX_PATTERNS</code>
+ *               entries; when full an arbitrary entry is evicted and simply recompiled
+ *               the next time it is asked for.
+ *
+ *               A <code>SimpleDateFormat</code> is not thread-safe, so each entry hands
+ *               out a private instance to every calling thread.  The entry itself is
+ *               immutable and can be shared freely.
+ *
+ *               Like <code>new SimpleDateFormat(pattern)</code>, a format follows the
+ *               current defaults: it is set to the default time zone every time it is
+ *               handed out, and compiled again when the default locale has changed.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+final class DateFormatCache {
+
+	/** Maximum number of distinct patterns kept in the registry. */
+	static final int MAX_PATTERNS = 64;
+
+	private static final ConcurrentHashMap<String, CompiledFormat> formats =
+		new ConcurrentHashMap<String, CompiledFormat>();
+
+	private DateFormatCache() {
+	}
+
+	/**
+	 * Format a date with the specified pattern.
+	 * @param pattern    Date format (e.g. MM/dd/yyyy)
+	 * @param date    Date to format.
+	 * @return Date as a string, exactly as <code>new SimpleDateFormat(pattern).format(date)</code>.
+	 */
+	static String format(String pattern, Date date) {
+		SimpleDateFormat sdf = get(pattern);
+		return sdf.format(date);
+	}
+
+	/**
+	 * Format a date with the specified pattern in the specified time zone.
+	 * @param pattern    Date format (e.g. MM/dd/yyyy)
+	 * @param date    Date to format.
+	 * @param zone    Time zone the fields are computed in.
+	 * @return Date as a string.
+	 */
+	static String format(String pattern, Date date, TimeZone zone) {
+		SimpleDateFormat sdf = get(pattern);
+		sdf.setTimeZone(zone);
+		return sdf.format(date);
+	}
+
+	/**
+	 * Parse a date with the specified pattern.
+	 * @param pattern    Date format (e.g. MM/dd/yyyy)
+	 * @param text    Date as a string.
+	 * @param lenient    Whether the underlying calendar is lenient.
+	 * @return The parsed date.
+	 * @throws ParseException
+	 */
+	static Date parse(String pattern, String text, boolean lenient) throws ParseException {
+		SimpleDateFormat sdf = get(pattern);
+		sdf.setLenient(lenient);
+		return sdf.parse(text);
+	}
+
+	/**
+	 * Get the compiled format for the specified pattern, private to the calling thread,
+	 * in the default locale and time zone.  The returned object must not be handed to
+	 * other threads.
+	 */
+	static SimpleDateFormat get(String pattern) {
+		if (pattern == null) {
+			throw new NullPointerException();
+		}
+		CompiledFormat compiled = formats.get(pattern);
+		if (compiled == null) {
+			if (formats.size() >= MAX_PATTERNS) {
+				evictOne();
+			}
+			compiled = new CompiledFormat(pattern);
+			CompiledFormat previous = formats.putIfAbsent(pattern, compiled);
+			if (previous != null) {
+				compiled = previous;
+			}
+		}
+		return compiled.format();
+	}
+
+	private static void evictOne() {
+		Iterator<String> it = formats.keySet().iterator();
+		if (it.hasNext()) {
+			it.next();
+			it.remove();
+		}
+	}
+
+	/**
+	 * One registry entry: the pattern and the per-thread compiled formats.
+	 */
+	private static final class CompiledFormat extends ThreadLocal<Localized> {
+
+		private final String pattern;
+
+		CompiledFormat(String pattern) {
+			this.pattern = pattern;
+		}
+
+		protected Localized initialValue() {
+			return new Localized(pattern);
+		}
+
+		/**
+		 * Get the format of the calling thread, compiled for the default locale and set
+		 * to the default time zone.
+		 */
+		SimpleDateFormat format() {
+			Localized localized = get();
+			if (!localized.locale.equals(Locale.getDefault(Locale.Category.FORMAT))) {
+				localized = new Localized(pattern);
+				set(localized);
+			}
+			localized.sdf.setTimeZone(TimeZone.getDefault());
+			return localized.sdf;
+		}
+	}
+
+	/**
+	 * A compiled format and the locale it was compiled for.
+	 */
+	private static final class Localized {
+
+		final Locale locale;
+
+		final SimpleDateFormat sdf;
+
+		Localized(String pattern) {
+			locale = Locale.getDefault(Locale.Category.FORMAT);
+			sdf = new SimpleDateFormat(pattern, locale);
+		}
+	}
+}
@@ -0,0 +1,440 @@
+package util;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Title:        Date arithmetic without a Calendar.
+ * Description:  Converts between milliseconds since January 1, 1970 00:00:00 GMT and civil
+ *               fields with plain integer arithmetic, following the same rules as
+ *               <code>GregorianCalendar</code> with its default cutover: Julian calendar
+ *               up to October 4, 1582, Gregorian from October 15, 1582.
+ *
+ *               Civil dates are handled as a packed <code>long</code>:
+ *               bits 16 and up hold the proleptic year (1 BC is year 0), bits 8 - 15 the
+ *               month (1 - 12) and bits 0 - 7 the day of the month.
+ *
+ *               Time zones are interned by ID so that many dates can share one
+ *               <code>TimeZone</code> instance.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+final class DateMath {
+
+	static final long MILLIS_PER_SECOND = 1000L;
+	static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+	static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+	static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+	/** Epoch day of October 15, 1582, the first day of the Gregorian calendar. */
+	static final long GREGORIAN_CUTOVER_DAY = -141427L;
+
+	/** Instant of October 15, 1582 00:00:00 GMT, the default <code>GregorianCalendar</code> cutover. */
+	static final long GREGORIAN_CUTOVER_MILLIS = GREGORIAN_CUTOVER_DAY * MILLIS_PER_DAY;
+
+	/** Epoch day of January 1, 4713 BC (Julian), day 0 of the Julian day number. */
+	private static final long JULIAN_DAY_ZERO = -2440588L;
+
+	/** Epoch days outside this range are converted through a GregorianCalendar. */
+	private static final long MIN_ARITHMETIC_DAY = JULIAN_DAY_ZERO;
+	private static final long MAX_ARITHMETIC_DAY = 365L * 1000000;
+
+	/** Returned by <code>addArithmetic</code> when a calendar is needed. */
+	static final long NO_RESULT = Long.MIN_VALUE;
+
+	/** Range of instants and of Gregorian years handled by <code>addArithmetic</code>. */
+	private static final long MAX_ARITHMETIC_MILLIS = 100000L * 365 * MILLIS_PER_DAY;
+	private static final int MIN_ARITHMETIC_YEAR = 1583;
+	private static final int MAX_ARITHMETIC_YEAR = 100000;
+
+	/** Largest distance from the epoch of an <code>add</code> result, about 146 million years. */
+	private static final long MAX_ADD_MILLIS = 1L << 62;
+
+	private static final ConcurrentHashMap<String, TimeZone> zones = new ConcurrentHashMap<String, TimeZone>();
+
+	private static final ThreadLocal<GregorianCalendar> calendars = new ThreadLocal<GregorianCalendar>() {
+		protected GregorianCalendar initialValue() {
+			return new GregorianCalendar(TimeZone.getTimeZone("GMT"));
+		}
+	};
+
+	private static final ThreadLocal<GregorianCalendar> zonedCalendars = new ThreadLocal<GregorianCalendar>() {
+		protected GregorianCalendar initialValue() {
+			return new GregorianCalendar();
+		}
+	};
+
+	private DateMath() {
+	}
+
+	/**
+	 * Get the shared instance of a time zone.  Zones with the same ID and the same rules
+	 * are represented by a single instance, which must never be modified.
+	 */
+	static TimeZone intern(TimeZone zone) {
+		String id = zone.getID();
+		TimeZone shared = zones.get(id);
+		if (shared == null) {
+			shared = (TimeZone) zone.clone();
+			TimeZone previous = zones.putIfAbsent(id, shared);
+			if (previous != null) {
+				shared = previous;
+			}
+		}
+		if (shared == zone || shared.hasSameRules(zone)) {
+			return shared;
+		}
+		// same ID with different rules: not shared
+		return (TimeZone) zone.clone();
+	}
+
+	/**
+	 * Get the shared instance of the default time zone.
+	 */
+	static TimeZone defaultZone() {
+		return intern(TimeZone.getDefault());
+	}
+
+	/**
+	 * Get the offset from GMT, DST included, at the specified instant, through the
+	 * <code>ZoneTable</code> of the zone when it has one.
+	 */
+	static int offset(TimeZone zone, long millis) {
+		ZoneTable table = ZoneTable.get(zone);
+		return table != null ? table.offset(millis) : zone.getOffset(millis);
+	}
+
+	/**
+	 * Get a calendar field at the specified instant, through a per-thread calendar.
+	 */
+	static int get(TimeZone zone, long millis, int field) {
+		GregorianCalendar cal = zonedCalendar(zone, millis);
+		return cal.get(field);
+	}
+
+	/**
+	 * Add an amount to a calendar field, as <code>Calendar.add(int, int)</code>.
+	 * @return The adjusted instant.
+	 * @throws ArithmeticException if the result could be further than
+	 * <code>MAX_ADD_MILLIS</code> from the epoch, where <code>GregorianCalendar</code>
+	 * overflows instead of failing.
+	 */
+	static long add(TimeZone zone, long millis, int field, int amount) {
+		long result = addArithmetic(zone, millis, field, amount);
+		if (result != NO_RESULT) {
+			return result;
+		}
+		// the longest a unit can be, with room for offset changes
+		double estimate = millis + (double) amount * maxLength(field);
+		if (Math.abs(estimate) > MAX_ADD_MILLIS) {
+			throw new ArithmeticException("long overflow");
+		}
+		GregorianCalendar cal = zonedCalendar(zone, millis);
+		cal.add(field, amount);
+		return cal.getTimeInMillis();
+	}
+
+	/**
+	 * Add an amount to a calendar field without a calendar, when the result is sure to
+	 * be the one of <code>GregorianCalendar.add(int, int)</code> with the default cutover.
+	 *
+	 * Time fields are a fixed number of milliseconds.  Days keep the local time of day,
+	 * which is a fixed number of milliseconds as long as the offset from GMT is the same
+	 * at both ends.  Months and years move the civil date, clamp the day to the end of
+	 * the month and keep the local time of day; the local time is converted back only if
+	 * the offset does not change within a day of the result.
+	 * @return The adjusted instant, <code>NO_RESULT</code> if a calendar is needed.
+	 */
+	static long addArithmetic(TimeZone zone, long millis, int field, int amount) {
+		if (millis < -MAX_ARITHMETIC_MILLIS || millis > MAX_ARITHMETIC_MILLIS) {
+			return NO_RESULT;
+		}
+		switch (field) {
+		case Calendar.MILLISECOND:
+			return millis + amount;
+		case Calendar.SECOND:
+			return millis + amount * MILLIS_PER_SECOND;
+		case Calendar.MINUTE:
+			return millis + amount * MILLIS_PER_MINUTE;
+		case Calendar.HOUR:
+		case Calendar.HOUR_OF_DAY:
+			return millis + amount * MILLIS_PER_HOUR;
+		case Calendar.DAY_OF_MONTH:
+		case Calendar.DAY_OF_YEAR:
+		case Calendar.DAY_OF_WEEK:
+			long result = millis + amount * MILLIS_PER_DAY;
+			return offset(zone, result) == offset(zone, millis) ? result : NO_RESULT;
+		case Calendar.MONTH:
+			return addMonths(zone, millis, amount);
+		case Calendar.YEAR:
+			return addMonths(zone, millis, amount * 12L);
+		default:
+			return NO_RESULT;
+		}
+	}
+
+	/**
+	 * Get the longest a unit of a calendar field can be, in milliseconds.
+	 */
+	private static long maxLength(int field) {
+		switch (field) {
+		case Calendar.MILLISECOND:
+			return 1;
+		case Calendar.SECOND:
+			return MILLIS_PER_SECOND;
+		case Calendar.MINUTE:
+			return MILLIS_PER_MINUTE;
+		case Calendar.HOUR:
+		case Calendar.HOUR_OF_DAY:
+			return MILLIS_PER_HOUR;
+		case Calendar.DAY_OF_MONTH:
+		case Calendar.DAY_OF_YEAR:
+		case Calendar.DAY_OF_WEEK:
+			return 2 * MILLIS_PER_DAY;
+		case Calendar.MONTH:
+			return 32 * MILLIS_PER_DAY;
+		default:
+			return 367 * MILLIS_PER_DAY;
+		}
+	}
+
+	/**
+	 * Get the shortest a unit of a calendar field can be, in milliseconds, away from
+	 * the Julian to Gregorian cutover and from offset changes.
+	 */
+	static long minLength(int field) {
+		switch (field) {
+		case Calendar.MILLISECOND:
+			return 1;
+		case Calendar.SECOND:
+			return MILLIS_PER_SECOND;
+		case Calendar.MINUTE:
+			return MILLIS_PER_MINUTE;
+		case Calendar.HOUR:
+		case Calendar.HOUR_OF_DAY:
+			return MILLIS_PER_HOUR;
+		case Calendar.DAY_OF_MONTH:
+		case Calendar.DAY_OF_YEAR:
+		case Calendar.DAY_OF_WEEK:
+			return MILLIS_PER_DAY;
+		case Calendar.MONTH:
+			return 28 * MILLIS_PER_DAY;
+		default:
+			return 365 * MILLIS_PER_DAY;
+		}
+	}
+
+	private static long addMonths(TimeZone zone, long millis, long amount) {
+		long local = localMillis(zone, millis);
+		long date = civil(epochDay(local));
+		int year = year(date);
+		if (year < MIN_ARITHMETIC_YEAR) {
+			return NO_RESULT;
+		}
+		long months = year * 12L + month(date) - 1 + amount;
+		long newYear = Math.floorDiv(months, 12);
+		if (newYear < MIN_ARITHMETIC_YEAR || newYear > MAX_ARITHMETIC_YEAR) {
+			return NO_RESULT;
+		}
+		int newMonth = (int) Math.floorMod(months, 12L) + 1;
+		int day = Math.min(day(date), DateParser.daysInMonth((int) newYear, newMonth));
+		return instant(zone, toEpochDay(newYear, newMonth, day) * MILLIS_PER_DAY + millisOfDay(local));
+	}
+
+	/**
+	 * Convert a local time back to an instant, if the offset is the same for a day on
+	 * either side, so that the local time is neither skipped nor repeated.
+	 * @return The instant, <code>NO_RESULT</code> if a calendar is needed.
+	 */
+	private static long instant(TimeZone zone, long local) {
+		int offset = offset(zone, local - zone.getRawOffset());
+		long result = local - offset;
+		if (offset(zone, result) != offset || offset(zone, result - MILLIS_PER_DAY) != offset
+				|| offset(zone, result + MILLIS_PER_DAY) != offset) {
+			return NO_RESULT;
+		}
+		return result;
+	}
+
+	private static GregorianCalendar zonedCalendar(TimeZone zone, long millis) {
+		GregorianCalendar cal = zonedCalendars.get();
+		cal.setTimeZone(zone);
+		cal.setTimeInMillis(millis);
+		return cal;
+	}
+
+	/**
+	 * Get the local wall-clock time, expressed as milliseconds since the epoch of the
+	 * local calendar.
+	 */
+	static long localMillis(TimeZone zone, long millis) {
+		return millis + offset(zone, millis);
+	}
+
+	/**
+	 * Get the day number, counted from January 1, 1970, of a local time.
+	 */
+	static long epochDay(long localMillis) {
+		return Math.floorDiv(localMillis, MILLIS_PER_DAY);
+	}
+
+	/**
+	 * Get the milliseconds elapsed since local midnight.
+	 */
+	static int millisOfDay(long localMillis) {
+		return (int) Math.floorMod(localMillis, MILLIS_PER_DAY);
+	}
+
+	static long pack(long year, int month, int day) {
+		return year << 16 | month << 8 | day;
+	}
+
+	/** Proleptic year of a packed date. */
+	static int year(long date) {
+		return (int) (date >> 16);
+	}
+
+	/** Month of a packed date, 1 - 12. */
+	static int month(long date) {
+		return (int) (date >> 8) & 0xFF;
+	}
+
+	/** Day of month of a packed date, 1 - 31. */
+	static int day(long date) {
+		return (int) date & 0xFF;
+	}
+
+	/**
+	 * Convert a proleptic year to the year of era reported by <code>Calendar.YEAR</code>.
+	 */
+	static int yearOfEra(int year) {
+		return year > 0 ? year : 1 - year;
+	}
+
+	/**
+	 * Get the packed civil date for a day number.
+	 */
+	static long civil(long epochDay) {
+		if (DayTable.contains(epochDay)) {
+			int entry = DayTable.get(epochDay);
+			return pack(DayTable.year(entry), DayTable.month(entry), DayTable.day(entry));
+		}
+		return computeCivil(epochDay);
+	}
+
+	/**
+	 * Compute the packed civil date for a day number, without <code>DayTable</code>.
+	 */
+	static long computeCivil(long epochDay) {
+		if (epochDay >= GREGORIAN_CUTOVER_DAY && epochDay <= MAX_ARITHMETIC_DAY) {
+			return gregorian(epochDay);
+		}
+		if (epochDay >= MIN_ARITHMETIC_DAY && epochDay < GREGORIAN_CUTOVER_DAY) {
+			return julian(epochDay);
+		}
+		GregorianCalendar cal = calendars.get();
+		cal.setTimeInMillis(epochDay * MILLIS_PER_DAY);
+		int year = cal.get(Calendar.YEAR);
+		if (cal.get(Calendar.ERA) == GregorianCalendar.BC) {
+			year = 1 - year;
+		}
+		return pack(year, cal.get(Calendar.MONTH) + 1, cal.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * Get the day number for a civil date, Julian before the cutover.
+	 * @param year    Proleptic year (1 BC is year 0)
+	 * @param month    1 - 12
+	 * @param day    1 - 31
+	 */
+	static long toEpochDay(long year, int month, int day) {
+		if (year > 1582 || (year == 1582 && (month > 10 || (month == 10 && day >= 15)))) {
+			return gregorianDay(year, month, day);
+		}
+		if (year >= -4712) {
+			return julianDay(year, month, day);
+		}
+		GregorianCalendar cal = calendars.get();
+		cal.clear();
+		cal.set(Calendar.ERA, year > 0 ? GregorianCalendar.AD : GregorianCalendar.BC);
+		cal.set(yearOfEra((int) year), month - 1, day);
+		return Math.floorDiv(cal.getTimeInMillis(), MILLIS_PER_DAY);
+	}
+
+	/**
+	 * Get the instant of local midnight of a day, resolved as a calendar set to that
+	 * date would resolve it.
+	 */
+	static long startOfDay(TimeZone zone, long epochDay) {
+		long date = civil(epochDay);
+		int year = year(date);
+		GregorianCalendar cal = zonedCalendars.get();
+		cal.setTimeZone(zone);
+		cal.clear();
+		cal.set(Calendar.ERA, year > 0 ? GregorianCalendar.AD : GregorianCalendar.BC);
+		cal.set(yearOfEra(year), month(date) - 1, day(date));
+		return cal.getTimeInMillis();
+	}
+
+	/**
+	 * Day of the week, <code>Calendar.SUNDAY</code> - <code>Calendar.SATURDAY</code>.
+	 */
+	static int dayOfWeek(long epochDay) {
+		// January 1, 1970 was a Thursday
+		return (int) Math.floorMod(epochDay + 4, 7L) + 1;
+	}
+
+	/**
+	 * Day of the year, as <code>Calendar.DAY_OF_YEAR</code>: 1 for January 1; the days
+	 * dropped in October 1582 are not counted.
+	 */
+	static int dayOfYear(long epochDay) {
+		if (DayTable.contains(epochDay)) {
+			return DayTable.dayOfYear(DayTable.get(epochDay));
+		}
+		return (int) (epochDay - toEpochDay(year(civil(epochDay)), 1, 1)) + 1;
+	}
+
+	private static long gregorian(long epochDay) {
+		long z = epochDay + 719468;
+		long era = Math.floorDiv(z, 146097);
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		long year = yoe + era * 400 + (month <= 2 ? 1 : 0);
+		return pack(year, month, day);
+	}
+
+	private static long gregorianDay(long year, int month, int day) {
+		long y = month <= 2 ? year - 1 : year;
+		long era = Math.floorDiv(y, 400);
+		long yoe = y - era * 400;
+		long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+	private static long julian(long epochDay) {
+		long c = epochDay - JULIAN_DAY_ZERO + 32082;
+		long d = (4 * c + 3) / 1461;
+		long e = c - 1461 * d / 4;
+		long m = (5 * e + 2) / 153;
+		int day = (int) (e - (153 * m + 2) / 5 + 1);
+		int month = (int) (m + 3 - 12 * (m / 10));
+		long year = d - 4800 + m / 10;
+		return pack(year, month, day);
+	}
+
+	private static long julianDay(long year, int month, int day) {
+		long a = (14 - month) / 12;
+		long y = year + 4800 - a;
+		long m = month + 12 * a - 3;
+		return day + (153 * m + 2) / 5 + 365 * y + y / 4 - 32083 + JULIAN_DAY_ZERO;
+	}
+}
@@ -0,0 +1,183 @@
+package util;
+
+/**
+ * Title:        Date input normalizer.
+ * Description:  Brings the date shapes accepted by <code>UDate.formatta(String)</code> to
+ *               the form <code>dd/MM/yy</code> or <code>dd/MM/yyyy</code> in one pass and
+ *               without substrings.  The shape is chosen from the input length and
+ *               the class of the characters at positions 1 and 2, then day, month
+ *               and year are copied as they are (one-digit day and month get a leading
+ *               zero).  No digit is checked, exactly as in <code>formatta</code>.
+ *
+ *      Length   Position 1 / 2          Input shape        Output
+ *      ------   --------------          -----------        ------
+ *      6        separator               d.M.yy             0d/0M/yy
+ *      6        other                   ddMMyy             dd/MM/yy
+ *      7        separator               d.MM.yy            0d/MM/yy
+ *      7        other                   dd.M.yy            dd/0M/yy
+ *      8        separator               d.M.yyyy           0d/0M/yyyy
+ *      8        other / separator       dd.MM.yy           dd/MM/yy
+ *      8        other / other           ddMMyyyy           dd/MM/yyyy
+ *      9        separator               d.MM.yyyy          0d/MM/yyyy
+ *      9        other                   dd.M.yyyy          dd/0M/yyyy
+ *      10       (integer first 4)       yyyy-MM-dd         dd/MM/yyyy
+ *      10       other                   dd.MM.yyyy         dd/MM/yyyy
+ *      19       (integer first 4)       yyyy-MM-dd ...     dd/MM/yyyy
+ *
+ *               Separators are '/', '.', '-' and ' '.  Every other input gives an
+ *               empty result.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+final class DateNormalizer {
+
+	/** Longest normalized date. */
+	static final int MAX_LENGTH = 10;
+
+	// Shapes: start and length of day, month and year in the input
+	private static final int D_START = 0;
+	private static final int D_LEN = 1;
+	private static final int M_START = 2;
+	private static final int M_LEN = 3;
+	private static final int Y_START = 4;
+	private static final int Y_LEN = 5;
+
+	private static final int[] NONE = null;
+	private static final int[] S6_SEP = { 0, 1, 2, 1, 4, 2 };
+	private static final int[] S6 = { 0, 2, 2, 2, 4, 2 };
+	private static final int[] S7_SEP = { 0, 1, 2, 2, 5, 2 };
+	private static final int[] S7 = { 0, 2, 3, 1, 5, 2 };
+	private static final int[] S8_SEP = { 0, 1, 2, 1, 4, 4 };
+	private static final int[] S8_SEP2 = { 0, 2, 3, 2, 6, 2 };
+	private static final int[] S8 = { 0, 2, 2, 2, 4, 4 };
+	private static final int[] S9_SEP = { 0, 1, 2, 2, 5, 4 };
+	private static final int[] S9 = { 0, 2, 3, 1, 5, 4 };
+	private static final int[] S10 = { 0, 2, 3, 2, 6, 4 };
+	private static final int[] ISO = { 8, 2, 5, 2, 0, 4 };
+
+	private static final boolean[] SEPARATOR = new boolean[128];
+
+	static {
+		SEPARATOR['/'] = true;
+		SEPARATOR['.'] = true;
+		SEPARATOR['-'] = true;
+		SEPARATOR[' '] = true;
+	}
+
+	private DateNormalizer() {
+	}
+
+	/**
+	 * Normalize a date held in a byte range, read as ISO-8859-1.
+	 * @param src    Input bytes.
+	 * @param off    Position of the first input byte.
+	 * @param len    Number of input bytes.
+	 * @param dst    Receives the normalized date, at least <code>MAX_LENGTH</code> free bytes.
+	 * @param dstOff    First position to write to.
+	 * @return Number of bytes written, 0 for an empty result.
+	 */
+	static int normalize(byte[] src, int off, int len, byte[] dst, int dstOff) {
+		int[] shape = shape(len, len > 1 ? src[off + 1] & 0xFF : 0, len > 2 ? src[off + 2] & 0xFF : 0,
+				len >= 4 && isInteger(src[off] & 0xFF, src[off + 1] & 0xFF, src[off + 2] & 0xFF, src[off + 3] & 0xFF));
+		if (shape == NONE) {
+			return 0;
+		}
+		int p = dstOff;
+		if (shape[D_LEN] == 1) {
+			dst[p++] = '0';
+		}
+		for (int i = 0; i < shape[D_LEN]; i++) {
+			dst[p++] = src[off + shape[D_START] + i];
+		}
+		dst[p++] = '/';
+		if (shape[M_LEN] == 1) {
+			dst[p++] = '0';
+		}
+		for (int i = 0; i < shape[M_LEN]; i++) {
+			dst[p++] = src[off + shape[M_START] + i];
+		}
+		dst[p++] = '/';
+		for (int i = 0; i < shape[Y_LEN]; i++) {
+			dst[p++] = src[off + shape[Y_START] + i];
+		}
+		return p - dstOff;
+	}
+
+	/**
+	 * Normalize a date held in a character sequence.
+	 * @param src    Input characters.
+	 * @param dst    Receives the normalized date, at least <code>MAX_LENGTH</code> free chars.
+	 * @param dstOff    First position to write to.
+	 * @return Number of chars written, 0 for an empty result.
+	 */
+	static int normalize(CharSequence src, char[] dst, int dstOff) {
+		int len = src.length();
+		int[] shape = shape(len, len > 1 ? src.charAt(1) : 0, len > 2 ? src.charAt(2) : 0,
+				len >= 4 && isInteger(src.charAt(0), src.charAt(1), src.charAt(2), src.charAt(3)));
+		if (shape == NONE) {
+			return 0;
+		}
+		int p = dstOff;
+		if (shape[D_LEN] == 1) {
+			dst[p++] = '0';
+		}
+		for (int i = 0; i < shape[D_LEN]; i++) {
+			dst[p++] = src.charAt(shape[D_START] + i);
+		}
+		dst[p++] = '/';
+		if (shape[M_LEN] == 1) {
+			dst[p++] = '0';
+		}
+		for (int i = 0; i < shape[M_LEN]; i++) {
+			dst[p++] = src.charAt(shape[M_START] + i);
+		}
+		dst[p++] = '/';
+		for (int i = 0; i < shape[Y_LEN]; i++) {
+			dst[p++] = src.charAt(shape[Y_START] + i);
+		}
+		return p - dstOff;
+	}
+
+	/**
+	 * Choose the shape of an input.
+	 * @param len    Input length.
+	 * @param c1    Character at position 1.
+	 * @param c2    Character at position 2.
+	 * @param integer4    Whether the first four characters are an integer.
+	 */
+	private static int[] shape(int len, int c1, int c2, boolean integer4) {
+		switch (len) {
+		case 6:
+			return isSeparator(c1) ? S6_SEP : S6;
+		case 7:
+			return isSeparator(c1) ? S7_SEP : S7;
+		case 8:
+			if (isSeparator(c1)) {
+				return S8_SEP;
+			}
+			return isSeparator(c2) ? S8_SEP2 : S8;
+		case 9:
+			return isSeparator(c1) ? S9_SEP : S9;
+		case 10:
+			return integer4 ? ISO : S10;
+		case 19:
+			return integer4 ? ISO : NONE;
+		default:
+			return NONE;
+		}
+	}
+
+	private static boolean isSeparator(int c) {
+		return c < 128 && SEPARATOR[c];
+	}
+
+	/**
+	 * Check whether four characters are accepted by <code>Integer.parseInt</code>:
+	 * four digits, or a sign followed by three digits.
+	 */
+	private static boolean isInteger(int c0, int c1, int c2, int c3) {
+		boolean first = c0 == '+' || c0 == '-' || Character.digit(c0, 10) >= 0;
+		return first && Character.digit(c1, 10) >= 0 && Character.digit(c2, 10) >= 0 && Character.digit(c3, 10) >= 0;
+	}
+}
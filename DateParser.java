@@ -0,0 +1,384 @@
+package util;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Title:        Hand-rolled parser for the standard date layouts.
+ * Description:  Parses <code>dd/MM/yyyy</code> (<code>UDate.formatoData</code> as shipped)
+ *               and <code>yyyy-MM-dd HH:mm:ss</code> (<code>UDate.TIMESTAMP</code>) from a
+ *               <code>CharSequence</code> or a byte range without creating any object.
+ *               Calendar fields are checked by arithmetic and the outcome is reported
+ *               through a status code in a caller supplied <code>Result</code>; nothing
+ *               is thrown for bad input.
+ *
+ *      Status         Meaning
+ *      ------         -------
+ *      OK             Fields parsed and valid; SimpleDateFormat would accept the text.
+ *      MALFORMED      Text does not match the layout; SimpleDateFormat would reject it.
+ *      INVALID        Layout matches but a field is out of range (non-lenient only);
+ *                     SimpleDateFormat would reject it.
+ *      UNSUPPORTED    Text uses a shape this parser does not decide (leading blanks,
+ *                     signs, non-ASCII digits, years after 9999 in non-lenient
+ *                     mode, ...).  Ask SimpleDateFormat.
+ *
+ *               As with <code>SimpleDateFormat.parse(String)</code>, numeric fields may
+ *               have any number of digits and text after the last field is ignored.
+ *               Dates before October 15, 1582 are Julian, as in GregorianCalendar.
+ *               Byte ranges are read as ISO-8859-1.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class DateParser {
+
+	public static final int OK = 0;
+	public static final int MALFORMED = 1;
+	public static final int INVALID = 2;
+	public static final int UNSUPPORTED = 3;
+
+	private static final String DATA = "dd/MM/yyyy";
+
+	/** Longest digit run decided here; longer runs are left to SimpleDateFormat. */
+	private static final int MAX_DIGITS = 9;
+
+
+	private static final int[] DAYS_IN_MONTH = { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+	private static final ThreadLocal<GregorianCalendar> calendars = new ThreadLocal<GregorianCalendar>() {
+		protected GregorianCalendar initialValue() {
+			return new GregorianCalendar();
+		}
+	};
+
+	private static final ThreadLocal<Result> results = new ThreadLocal<Result>() {
+		protected Result initialValue() {
+			return new Result();
+		}
+	};
+
+	private DateParser() {
+	}
+
+	/**
+	 * Outcome of a parse.  Reuse one instance per thread to parse without allocating.
+	 */
+	public static final class Result {
+		int status;
+		int errorIndex;
+		int year;
+		int month;
+		int day;
+		int hour;
+		int minute;
+		int second;
+		int value;
+
+		/** One of <code>OK</code>, <code>MALFORMED</code>, <code>INVALID</code>, <code>UNSUPPORTED</code>. */
+		public int getStatus() { return status; }
+
+		/** Position of the failure, as <code>ParseException.getErrorOffset()</code>; -1 if none. */
+		public int getErrorIndex() { return errorIndex; }
+
+		/** Year (with century), as parsed. */
+		public int getYear() { return year; }
+
+		/** Month as parsed, 1 - 12 unless lenient. */
+		public int getMonth() { return month; }
+
+		/** Day as parsed, 1 - 31 unless lenient. */
+		public int getDay() { return day; }
+
+		/** Hour of day as parsed, 0 - 23 unless lenient. */
+		public int getHour() { return hour; }
+
+		/** Minute as parsed, 0 - 59 unless lenient. */
+		public int getMinute() { return minute; }
+
+		/** Second as parsed, 0 - 59 unless lenient. */
+		public int getSecond() { return second; }
+
+		/**
+		 * Get the parsed fields as milliseconds since January 1, 1970 00:00:00 GMT in the
+		 * default time zone, out of range fields rolled over.  Only meaningful if the status
+		 * is <code>OK</code>.
+		 */
+		public long getTimeInMillis() {
+			GregorianCalendar cal = calendars.get();
+			cal.setTimeZone(TimeZone.getDefault());
+			cal.clear();
+			cal.set(year, month - 1, day, hour, minute, second);
+			return cal.getTimeInMillis();
+		}
+
+		private int fail(int status, int index) {
+			this.status = status;
+			this.errorIndex = index;
+			return -1;
+		}
+	}
+
+	/**
+	 * Parse a date in the format dd/MM/yyyy, non-lenient.
+	 * @param text    Date as a string.
+	 * @param result    Receives the fields and status.
+	 * @return The status, also stored in <code>result</code>.
+	 */
+	public static int parseData(CharSequence text, Result result) {
+		return parseData(text, null, 0, text.length(), result);
+	}
+
+	/**
+	 * Parse a date in the format dd/MM/yyyy, non-lenient.
+	 * @param bytes    Buffer holding the date.
+	 * @param off    Position of the first byte.
+	 * @param len    Number of bytes.
+	 * @param result    Receives the fields and status.
+	 * @return The status, also stored in <code>result</code>.
+	 */
+	public static int parseData(byte[] bytes, int off, int len, Result result) {
+		return parseData(null, bytes, off, off + len, result);
+	}
+
+	/**
+	 * Parse a date in the format yyyy-MM-dd HH:mm:ss.
+	 * @param text    Date as a string.
+	 * @param lenient    If false, out of range fields are reported as <code>INVALID</code>;
+	 * if true they are kept and rolled over by <code>getTimeInMillis()</code>.
+	 * @param result    Receives the fields and status.
+	 * @return The status, also stored in <code>result</code>.
+	 */
+	public static int parseTimestamp(CharSequence text, boolean lenient, Result result) {
+		return parseTimestamp(text, null, 0, text.length(), lenient, result);
+	}
+
+	/**
+	 * Parse a date in the format yyyy-MM-dd HH:mm:ss.
+	 * @param bytes    Buffer holding the date.
+	 * @param off    Position of the first byte.
+	 * @param len    Number of bytes.
+	 * @param lenient    See <code>parseTimestamp(CharSequence, boolean, Result)</code>.
+	 * @param result    Receives the fields and status.
+	 * @return The status, also stored in <code>result</code>.
+	 */
+	public static int parseTimestamp(byte[] bytes, int off, int len, boolean lenient, Result result) {
+		return parseTimestamp(null, bytes, off, off + len, lenient, result);
+	}
+
+	/**
+	 * Check whether the fields are a valid date for a non-lenient GregorianCalendar.
+	 * @param year    Year (with century), 1583 - 9999
+	 * @param month    Month as parsed.
+	 * @param day    Day as parsed.
+	 */
+	public static boolean isValidDate(int year, int month, int day) {
+		return month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month);
+	}
+
+	/**
+	 * Check whether the fields are a valid date for a non-lenient GregorianCalendar
+	 * with the default cutover: Julian rules up to October 4, 1582, no October 5 - 14,
+	 * 1582, Gregorian rules afterwards.
+	 * @param year    Year (with century), 1 - 9999
+	 */
+	private static boolean isCalendarDate(int year, int month, int day) {
+		if (year > 1582) {
+			return isValidDate(year, month, day);
+		}
+		if (year < 1 || month < 1 || month > 12 || day < 1) {
+			return false;
+		}
+		if (year == 1582 && month == 10 && day > 4 && day < 15) {
+			return false;
+		}
+		int days = month == 2 && (year & 3) == 0 ? 29 : DAYS_IN_MONTH[month - 1];
+		return day <= days;
+	}
+
+	/**
+	 * Get the number of days in a month of the Gregorian calendar.
+	 * @param year    Year (with century)
+	 * @param month    1 - 12
+	 */
+	public static int daysInMonth(int year, int month) {
+		if (month == 2 && isLeapYear(year)) {
+			return 29;
+		}
+		return DAYS_IN_MONTH[month - 1];
+	}
+
+	/**
+	 * Check for a leap year of the Gregorian calendar.
+	 * @param year    Year (with century)
+	 */
+	public static boolean isLeapYear(int year) {
+		return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+	}
+
+	/**
+	 * Parse the specified text exactly as <code>SimpleDateFormat(pattern).parse(text)</code>
+	 * would, using this class when the pattern is one of its layouts and falling back to
+	 * <code>SimpleDateFormat</code> when the text is <code>UNSUPPORTED</code>.
+	 * @param pattern    Date format (e.g. dd/MM/yyyy)
+	 * @param text    Date as a string.
+	 * @param lenient    Whether the calendar is lenient.
+	 * @throws ParseException
+	 */
+	static Date parse(String pattern, String text, boolean lenient) throws ParseException {
+		int status = UNSUPPORTED;
+		Result result = results.get();
+		if (pattern.equals(DATA)) {
+			if (!lenient) {
+				status = parseData(text, null, 0, text.length(), result);
+			}
+		} else if (pattern.equals(UDate.TIMESTAMP)) {
+			status = parseTimestamp(text, null, 0, text.length(), lenient, result);
+		}
+		switch (status) {
+		case OK:
+			return new Date(result.getTimeInMillis());
+		case MALFORMED:
+		case INVALID:
+			throw new ParseException("Unparseable date: \"" + text + "\"", result.errorIndex);
+		default:
+			return DateFormatCache.parse(pattern, text, lenient);
+		}
+	}
+
+	private static int parseData(CharSequence text, byte[] bytes, int pos, int end, Result r) {
+		r.hour = 0;
+		r.minute = 0;
+		r.second = 0;
+		int p = field(text, bytes, pos, end, r);
+		if (p < 0) {
+			return r.status;
+		}
+		r.day = r.value;
+		if ((p = separator(text, bytes, p, end, '/', r)) < 0 || (p = field(text, bytes, p, end, r)) < 0) {
+			return r.status;
+		}
+		r.month = r.value;
+		if ((p = separator(text, bytes, p, end, '/', r)) < 0 || (p = field(text, bytes, p, end, r)) < 0) {
+			return r.status;
+		}
+		r.year = r.value;
+		if (p < end && isDoubtful(charAt(text, bytes, p))) {
+			r.fail(UNSUPPORTED, p);
+			return r.status;
+		}
+		if (r.year > 9999) {
+			r.fail(UNSUPPORTED, p);
+			return r.status;
+		}
+		if (!isCalendarDate(r.year, r.month, r.day)) {
+			r.fail(INVALID, p);
+			return r.status;
+		}
+		r.status = OK;
+		r.errorIndex = -1;
+		return OK;
+	}
+
+	private static int parseTimestamp(CharSequence text, byte[] bytes, int pos, int end, boolean lenient, Result r) {
+		int p = field(text, bytes, pos, end, r);
+		if (p < 0) {
+			return r.status;
+		}
+		r.year = r.value;
+		if ((p = separator(text, bytes, p, end, '-', r)) < 0 || (p = field(text, bytes, p, end, r)) < 0) {
+			return r.status;
+		}
+		r.month = r.value;
+		if ((p = separator(text, bytes, p, end, '-', r)) < 0 || (p = field(text, bytes, p, end, r)) < 0) {
+			return r.status;
+		}
+		r.day = r.value;
+		if ((p = separator(text, bytes, p, end, ' ', r)) < 0 || (p = field(text, bytes, p, end, r)) < 0) {
+			return r.status;
+		}
+		r.hour = r.value;
+		if ((p = separator(text, bytes, p, end, ':', r)) < 0 || (p = field(text, bytes, p, end, r)) < 0) {
+			return r.status;
+		}
+		r.minute = r.value;
+		if ((p = separator(text, bytes, p, end, ':', r)) < 0 || (p = field(text, bytes, p, end, r)) < 0) {
+			return r.status;
+		}
+		r.second = r.value;
+		if (p < end && isDoubtful(charAt(text, bytes, p))) {
+			r.fail(UNSUPPORTED, p);
+			return r.status;
+		}
+		if (!lenient) {
+			if (r.year > 9999) {
+				r.fail(UNSUPPORTED, p);
+				return r.status;
+			}
+			if (!isCalendarDate(r.year, r.month, r.day) || r.hour > 23 || r.minute > 59 || r.second > 59) {
+				r.fail(INVALID, p);
+				return r.status;
+			}
+		}
+		r.status = OK;
+		r.errorIndex = -1;
+		return OK;
+	}
+
+	private static int charAt(CharSequence text, byte[] bytes, int i) {
+		return text != null ? text.charAt(i) : bytes[i] & 0xFF;
+	}
+
+	/**
+	 * Read a run of ASCII digits.  The value is left in <code>r.value</code>.
+	 * @return The position after the run, or -1 with the status set.
+	 */
+	private static int field(CharSequence text, byte[] bytes, int p, int end, Result r) {
+		if (p >= end) {
+			return r.fail(MALFORMED, p);
+		}
+		int c = charAt(text, bytes, p);
+		if (c < '0' || c > '9') {
+			boolean rejected = c == '+' || c == '/' || c == ':' || (c < 128 && Character.isLetter(c));
+			return r.fail(rejected ? MALFORMED : UNSUPPORTED, p);
+		}
+		int start = p;
+		int value = 0;
+		do {
+			if (p - start == MAX_DIGITS) {
+				return r.fail(UNSUPPORTED, p);
+			}
+			value = value * 10 + (c - '0');
+			if (++p == end) {
+				break;
+			}
+			c = charAt(text, bytes, p);
+		} while (c >= '0' && c <= '9');
+		r.value = value;
+		return p;
+	}
+
+	/**
+	 * Match a separator after a digit run.
+	 * @return The position after the separator, or -1 with the status set.
+	 */
+	private static int separator(CharSequence text, byte[] bytes, int p, int end, char sep, Result r) {
+		if (p >= end) {
+			return r.fail(MALFORMED, p);
+		}
+		int c = charAt(text, bytes, p);
+		if (c == sep) {
+			return p + 1;
+		}
+		return r.fail(isDoubtful(c) ? UNSUPPORTED : MALFORMED, p);
+	}
+
+	/**
+	 * Check for a character DecimalFormat might still read as part of the number
+	 * before it.
+	 */
+	private static boolean isDoubtful(int c) {
+		return c >= 128 || c == '.' || c == ',' || c == 'E' || c == 'e';
+	}
+}
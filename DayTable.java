@@ -0,0 +1,106 @@
+package util;
+
+/**
+ * Title:        Day number lookup table.
+ * Description:  Civil fields of every day between January 1 of <code>FIRST_YEAR</code>
+ *               and December 31 of <code>LAST_YEAR</code>, precomputed into one
+ *               <code>int</code> per day so that <code>DateMath</code> turns a day number
+ *               into a date with an index and a few shifts.  Days outside the range are
+ *               left to the arithmetic in <code>DateMath</code>.
+ *
+ *      Bits      Field
+ *      ----      -----
+ *      21 - 31   Year - FIRST_YEAR
+ *      17 - 20   Month, 1 - 12
+ *      12 - 16   Day of month, 1 - 31
+ *       9 - 11   Day of week, Calendar.SUNDAY - Calendar.SATURDAY
+ *       0 -  8   Day of year, 1 - 366
+ *
+ *               The range defaults to 1900 - 2100 (about 290 KB) and is set with the
+ *               system properties <code>util.DayTable.firstYear</code> and
+ *               <code>util.DayTable.lastYear</code>, at most 2048 years.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+final class DayTable {
+
+	static final int FIRST_YEAR;
+
+	static final int LAST_YEAR;
+
+	private static final int MAX_YEARS = 1 << 11;
+
+	private static final long FIRST_DAY;
+
+	private static final int[] DAYS;
+
+	static {
+		int first = Integer.getInteger("util.DayTable.firstYear", 1900).intValue();
+		int last = Integer.getInteger("util.DayTable.lastYear", 2100).intValue();
+		if (last < first || last - first >= MAX_YEARS) {
+			first = 1900;
+			last = 2100;
+		}
+		FIRST_YEAR = first;
+		LAST_YEAR = last;
+		FIRST_DAY = DateMath.toEpochDay(first, 1, 1);
+		int[] days = new int[(int) (DateMath.toEpochDay(last + 1, 1, 1) - FIRST_DAY)];
+		int dayOfYear = 0;
+		int year = first;
+		for (int i = 0; i < days.length; i++) {
+			long epochDay = FIRST_DAY + i;
+			long date = DateMath.computeCivil(epochDay);
+			if (DateMath.year(date) != year) {
+				year = DateMath.year(date);
+				dayOfYear = 0;
+			}
+			dayOfYear++;
+			days[i] = (year - first) << 21 | DateMath.month(date) << 17 | DateMath.day(date) << 12
+					| DateMath.dayOfWeek(epochDay) << 9 | dayOfYear;
+		}
+		DAYS = days;
+	}
+
+	private DayTable() {
+	}
+
+	/**
+	 * Check whether a day number is in the table.
+	 */
+	static boolean contains(long epochDay) {
+		return epochDay >= FIRST_DAY && epochDay - FIRST_DAY < DAYS.length;
+	}
+
+	/**
+	 * Get the entry of a day number; see <code>contains(long)</code>.
+	 */
+	static int get(long epochDay) {
+		return DAYS[(int) (epochDay - FIRST_DAY)];
+	}
+
+	/** Proleptic year of an entry. */
+	static int year(int entry) {
+		return (entry >>> 21) + FIRST_YEAR;
+	}
+
+	/** Month of an entry, 1 - 12. */
+	static int month(int entry) {
+		return entry >>> 17 & 0xF;
+	}
+
+	/** Day of month of an entry, 1 - 31. */
+	static int day(int entry) {
+		return entry >>> 12 & 0x1F;
+	}
+
+	/** Day of week of an entry, <code>Calendar.SUNDAY</code> - <code>Calendar.SATURDAY</code>. */
+	static int dayOfWeek(int entry) {
+		return entry >>> 9 & 0x7;
+	}
+
+	/** Day of year of an entry, 1 - 366. */
+	static int dayOfYear(int entry) {
+		return entry & 0x1FF;
+	}
+}
@@ -0,0 +1,188 @@
+package util;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Title:        Purchase order invoiced totals.
+ * Description:  Java counterpart of the <code>CORSISTA3.ES14</code> procedure: writes into
+ *               <code>ORDINEACQUISTO.FATTURATO</code> the total <code>IMPORTO</code> of the
+ *               passive invoice details (<code>FATTURAPASSIVADETTAGLIO</code>) that refer to
+ *               the details of each order (<code>ORDINEACQUISTODETTAGLIO</code>).
+ *
+ *               The orders and their invoice details are read in one forward-only query
+ *               sorted by order, with a large fetch size, and each total is complete as soon
+ *               as the next order starts; it is then written through a batched
+ *               <code>UPDATE</code>.  Memory use is one batch of updates, whatever the
+ *               number of rows.  Results are the same as ES14: 0 for an order without
+ *               invoiced details, <code>NULL</code> if any amount is <code>NULL</code>.
+ *
+ *               The SQL is plain ANSI, so the job runs on the production database as well as
+ *               on an embedded one.  Use separate connections for reading and writing when
+ *               committing per batch, so that the read cursor is not affected by the commits.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class FatturatoBatch {
+
+	private static final String SELECT = "SELECT O.IDORDINEACQUISTO, F.IDORDINEDIACQUISTODETTAGLIO, F.IMPORTO"
+			+ " FROM ORDINEACQUISTO O"
+			+ " LEFT JOIN ORDINEACQUISTODETTAGLIO D ON D.IDORDINEACQUISTO = O.IDORDINEACQUISTO"
+			+ " LEFT JOIN FATTURAPASSIVADETTAGLIO F ON F.IDORDINEDIACQUISTODETTAGLIO = D.IDORDINEDIACQUISTODETTAGLIO"
+			+ " ORDER BY O.IDORDINEACQUISTO";
+
+	private static final String UPDATE = "UPDATE ORDINEACQUISTO SET FATTURATO = ? WHERE IDORDINEACQUISTO = ?";
+
+	private int fetchSize = 10000;
+
+	private int batchSize = 1000;
+
+	private boolean commitEachBatch;
+
+	// Statistics of the last run
+	private long orders;
+	private long invoiceRows;
+	private long elapsedMillis;
+
+	// Updates added since the last executeBatch()
+	private int pending;
+
+	/**
+	 * Set the number of rows fetched per round trip, 10000 by default.
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
+	/**
+	 * Set the number of updates per <code>executeBatch()</code>, 1000 by default.
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Commit the write connection after every batch, instead of leaving the whole run
+	 * to the caller as one transaction (the default, as ES14).
+	 */
+	public void setCommitEachBatch(boolean commitEachBatch) {
+		this.commitEachBatch = commitEachBatch;
+	}
+
+	/**
+	 * Compute and write the totals of every order on one connection.
+	 * @see #run(Connection, Connection)
+	 */
+	public int run(Connection con) throws SQLException {
+		return run(con, con);
+	}
+
+	/**
+	 * Compute and write the totals of every order.
+	 * @param read    Connection the orders and invoice details are read from.
+	 * @param write    Connection the totals are written to.
+	 * @return 1 if at least one invoice detail refers to an order, otherwise 0 (the
+	 * <code>v_esito</code> of ES14).
+	 * @throws SQLException
+	 */
+	public int run(Connection read, Connection write) throws SQLException {
+		long start = System.currentTimeMillis();
+		orders = 0;
+		invoiceRows = 0;
+		pending = 0;
+		PreparedStatement select = read.prepareStatement(SELECT, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		try {
+			PreparedStatement update = write.prepareStatement(UPDATE);
+			try {
+				select.setFetchSize(fetchSize);
+				ResultSet rs = select.executeQuery();
+				try {
+					aggregate(rs, update);
+				} finally {
+					rs.close();
+				}
+			} finally {
+				update.close();
+			}
+		} finally {
+			select.close();
+			elapsedMillis = System.currentTimeMillis() - start;
+		}
+		return invoiceRows > 0 ? 1 : 0;
+	}
+
+	/** Get the number of orders updated by the last run. */
+	public long getOrders() {
+		return orders;
+	}
+
+	/** Get the number of invoice detail rows summed by the last run. */
+	public long getInvoiceRows() {
+		return invoiceRows;
+	}
+
+	/** Get the duration of the last run in milliseconds. */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	private void aggregate(ResultSet rs, PreparedStatement update) throws SQLException {
+		boolean open = false;
+		long order = 0;
+		BigDecimal total = null;
+		while (rs.next()) {
+			long id = rs.getLong(1);
+			if (!open || id != order) {
+				if (open && add(update, order, total) == batchSize) {
+					flush(update);
+				}
+				open = true;
+				order = id;
+				total = BigDecimal.ZERO;
+			}
+			rs.getLong(2);
+			if (rs.wasNull()) {
+				// order or order detail without invoices
+				continue;
+			}
+			invoiceRows++;
+			BigDecimal amount = rs.getBigDecimal(3);
+			// as in ES14, a NULL amount makes the whole total NULL
+			total = (total == null || amount == null) ? null : total.add(amount);
+		}
+		if (open) {
+			add(update, order, total);
+		}
+		flush(update);
+	}
+
+	private int add(PreparedStatement update, long order, BigDecimal total) throws SQLException {
+		if (total == null) {
+			update.setNull(1, Types.NUMERIC);
+		} else {
+			update.setBigDecimal(1, total);
+		}
+		update.setLong(2, order);
+		update.addBatch();
+		orders++;
+		return ++pending;
+	}
+
+	private void flush(PreparedStatement update) throws SQLException {
+		if (pending > 0) {
+			update.executeBatch();
+			pending = 0;
+			if (commitEachBatch && !update.getConnection().getAutoCommit()) {
+				update.getConnection().commit();
+			}
+		}
+	}
+}
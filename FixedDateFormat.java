@@ -0,0 +1,421 @@
+package util;
+
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Title:        Fixed-layout date formatter.
+ * Description:  Writes the standard <code>UDate</code> layouts straight into a caller
+ *               supplied <code>char[]</code>, <code>StringBuilder</code> or
+ *               <code>Appendable</code>, digit by digit.  Only the following patterns
+ *               are handled; anything else must go through <code>SimpleDateFormat</code>.
+ *
+ *      Pattern                 Layout
+ *      -------                 ------
+ *      yyyy-MM-dd HH:mm:ss     UDate.TIMESTAMP
+ *      yyyy-MM-dd              UDate.DATESTAMP
+ *      HH:mm:ss                UDate.TIME
+ *      dd/MM/yyyy              UDate.formatoData (as shipped)
+ *
+ *               The output is identical to <code>SimpleDateFormat</code> for years
+ *               1 - 9999.  A <code>UDate</code> is written with the fields it has in the
+ *               default time zone, as <code>new SimpleDateFormat(pattern)</code> would
+ *               write it.  The fast path is switched off altogether while the default
+ *               locale does not format these patterns with a Gregorian calendar and
+ *               ASCII digits.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class FixedDateFormat {
+
+	/** Pattern is not one of the fixed layouts. */
+	public static final int NONE = -1;
+	/** yyyy-MM-dd HH:mm:ss */
+	public static final int LAYOUT_TIMESTAMP = 0;
+	/** yyyy-MM-dd */
+	public static final int LAYOUT_DATESTAMP = 1;
+	/** HH:mm:ss */
+	public static final int LAYOUT_TIME = 2;
+	/** dd/MM/yyyy */
+	public static final int LAYOUT_DATA = 3;
+
+	private static final String DATA = "dd/MM/yyyy";
+
+	private static final int[] LENGTHS = { 19, 10, 8, 10 };
+
+	private static final char[] DIGITS_TENS = new char[100];
+	private static final char[] DIGITS_ONES = new char[100];
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGITS_TENS[i] = (char) ('0' + i / 10);
+			DIGITS_ONES[i] = (char) ('0' + i % 10);
+		}
+	}
+
+	// Outcome of selfCheck() for the default locale it was run with
+	private static volatile Check check = new Check(Locale.getDefault(Locale.Category.FORMAT));
+
+	private FixedDateFormat() {
+	}
+
+	/**
+	 * Get the layout for the specified pattern.
+	 * @param pattern    Date format (e.g. yyyy-MM-dd)
+	 * @return One of the <code>LAYOUT_*</code> constants, <code>NONE</code> if the pattern
+	 * has no fixed layout or the fast path is disabled.
+	 */
+	public static int layoutOf(String pattern) {
+		if (pattern == null || !enabled()) {
+			return NONE;
+		}
+		if (pattern == UDate.TIMESTAMP) {
+			return LAYOUT_TIMESTAMP;
+		}
+		if (pattern == UDate.DATESTAMP) {
+			return LAYOUT_DATESTAMP;
+		}
+		if (pattern == UDate.TIME) {
+			return LAYOUT_TIME;
+		}
+		switch (pattern.length()) {
+		case 19:
+			return pattern.equals(UDate.TIMESTAMP) ? LAYOUT_TIMESTAMP : NONE;
+		case 10:
+			if (pattern.equals(DATA)) {
+				return LAYOUT_DATA;
+			}
+			return pattern.equals(UDate.DATESTAMP) ? LAYOUT_DATESTAMP : NONE;
+		case 8:
+			return pattern.equals(UDate.TIME) ? LAYOUT_TIME : NONE;
+		default:
+			return NONE;
+		}
+	}
+
+	/**
+	 * Get the number of characters written for the specified layout.
+	 * @param layout    One of the <code>LAYOUT_*</code> constants.
+	 */
+	public static int length(int layout) {
+		return LENGTHS[layout];
+	}
+
+	/**
+	 * Check whether a date can be written by this class.
+	 * @param year    Year (with century)
+	 */
+	public static boolean supportsYear(int year) {
+		return year >= 1 && year <= 9999;
+	}
+
+	/**
+	 * Write the date in the specified layout.
+	 * @param layout    One of the <code>LAYOUT_*</code> constants.
+	 * @param year    Year (with century), 1 - 9999
+	 * @param month    1 - 12
+	 * @param day    1 - 31
+	 * @param hour    0 - 23
+	 * @param minute    0 - 59
+	 * @param second    0 - 59
+	 * @param buf    Destination buffer.
+	 * @param off    First position to write to.
+	 * @return The position after the last character written.
+	 */
+	public static int format(int layout, int year, int month, int day, int hour, int minute, int second,
+			char[] buf, int off) {
+		switch (layout) {
+		case LAYOUT_TIMESTAMP:
+			off = writeIsoDate(year, month, day, buf, off);
+			buf[off++] = ' ';
+			return writeTime(hour, minute, second, buf, off);
+		case LAYOUT_DATESTAMP:
+			return writeIsoDate(year, month, day, buf, off);
+		case LAYOUT_TIME:
+			return writeTime(hour, minute, second, buf, off);
+		case LAYOUT_DATA:
+			off = write2(day, buf, off);
+			buf[off++] = '/';
+			off = write2(month, buf, off);
+			buf[off++] = '/';
+			return write4(year, buf, off);
+		default:
+			throw new IllegalArgumentException("layout " + layout);
+		}
+	}
+
+	/**
+	 * Write an instant in the specified layout, with the fields it has in the specified
+	 * time zone.
+	 * @param layout    One of the <code>LAYOUT_*</code> constants.
+	 * @param millis    Milliseconds since January 1, 1970 00:00:00 GMT
+	 * @param zone    Time zone the fields are computed in.
+	 * @param buf    Destination buffer.
+	 * @param off    First position to write to.
+	 * @return The position after the last character written, -1 if the year is not
+	 * between 1 and 9999; nothing is written then.
+	 */
+	public static int format(int layout, long millis, TimeZone zone, char[] buf, int off) {
+		long local = DateMath.localMillis(zone, millis);
+		long civil = DateMath.civil(DateMath.epochDay(local));
+		int year = DateMath.year(civil);
+		if (!supportsYear(year)) {
+			return -1;
+		}
+		int time = DateMath.millisOfDay(local);
+		return format(layout, year, DateMath.month(civil), DateMath.day(civil), hour(time), minute(time),
+				second(time), buf, off);
+	}
+
+	/**
+	 * Write the date in the specified layout, with the fields it has in the default
+	 * time zone.
+	 * @param layout    One of the <code>LAYOUT_*</code> constants.
+	 * @param date    Date to write, with a year between 1 and 9999.
+	 * @param buf    Destination buffer.
+	 * @param off    First position to write to.
+	 * @return The position after the last character written.
+	 */
+	public static int format(int layout, UDate date, char[] buf, int off) {
+		long local = local(date);
+		long civil = DateMath.civil(DateMath.epochDay(local));
+		int time = DateMath.millisOfDay(local);
+		return format(layout, DateMath.year(civil), DateMath.month(civil), DateMath.day(civil), hour(time),
+				minute(time), second(time), buf, off);
+	}
+
+	/**
+	 * Append the date in the specified layout, with the fields it has in the default
+	 * time zone.
+	 * @param layout    One of the <code>LAYOUT_*</code> constants.
+	 * @param date    Date to write, with a year between 1 and 9999.
+	 * @param sb    Destination.
+	 */
+	public static void format(int layout, UDate date, StringBuilder sb) {
+		int start = sb.length();
+		int len = LENGTHS[layout];
+		sb.setLength(start + len);
+		long local = local(date);
+		long civil = DateMath.civil(DateMath.epochDay(local));
+		int time = DateMath.millisOfDay(local);
+		int year = DateMath.year(civil);
+		int month = DateMath.month(civil);
+		int day = DateMath.day(civil);
+		int hour = hour(time);
+		int minute = minute(time);
+		int second = second(time);
+		switch (layout) {
+		case LAYOUT_TIMESTAMP:
+			setIsoDate(year, month, day, sb, start);
+			sb.setCharAt(start + 10, ' ');
+			setTime(hour, minute, second, sb, start + 11);
+			break;
+		case LAYOUT_DATESTAMP:
+			setIsoDate(year, month, day, sb, start);
+			break;
+		case LAYOUT_TIME:
+			setTime(hour, minute, second, sb, start);
+			break;
+		case LAYOUT_DATA:
+			set2(day, sb, start);
+			sb.setCharAt(start + 2, '/');
+			set2(month, sb, start + 3);
+			sb.setCharAt(start + 5, '/');
+			set4(year, sb, start + 6);
+			break;
+		default:
+			sb.setLength(start);
+			throw new IllegalArgumentException("layout " + layout);
+		}
+	}
+
+	/**
+	 * Append the date in the specified layout, one character at a time, with the fields
+	 * it has in the default time zone.
+	 * @param layout    One of the <code>LAYOUT_*</code> constants.
+	 * @param date    Date to write, with a year between 1 and 9999.
+	 * @param out    Destination.
+	 * @throws IOException
+	 */
+	public static void format(int layout, UDate date, Appendable out) throws IOException {
+		long local = local(date);
+		long civil = DateMath.civil(DateMath.epochDay(local));
+		int time = DateMath.millisOfDay(local);
+		int year = DateMath.year(civil);
+		int month = DateMath.month(civil);
+		int day = DateMath.day(civil);
+		switch (layout) {
+		case LAYOUT_TIMESTAMP:
+			appendIsoDate(year, month, day, out);
+			out.append(' ');
+			appendTime(time, out);
+			break;
+		case LAYOUT_DATESTAMP:
+			appendIsoDate(year, month, day, out);
+			break;
+		case LAYOUT_TIME:
+			appendTime(time, out);
+			break;
+		case LAYOUT_DATA:
+			append2(day, out);
+			out.append('/');
+			append2(month, out);
+			out.append('/');
+			append4(year, out);
+			break;
+		default:
+			throw new IllegalArgumentException("layout " + layout);
+		}
+	}
+
+	/**
+	 * Get the local time of a date in the default time zone, the zone
+	 * <code>SimpleDateFormat</code> computes its fields in.
+	 */
+	private static long local(UDate date) {
+		return DateMath.localMillis(DateMath.defaultZone(), date.getTimeInMillis());
+	}
+
+	private static int hour(int millisOfDay) {
+		return millisOfDay / (int) DateMath.MILLIS_PER_HOUR;
+	}
+
+	private static int minute(int millisOfDay) {
+		return millisOfDay / (int) DateMath.MILLIS_PER_MINUTE % 60;
+	}
+
+	private static int second(int millisOfDay) {
+		return millisOfDay / (int) DateMath.MILLIS_PER_SECOND % 60;
+	}
+
+	private static int writeIsoDate(int year, int month, int day, char[] buf, int off) {
+		off = write4(year, buf, off);
+		buf[off++] = '-';
+		off = write2(month, buf, off);
+		buf[off++] = '-';
+		return write2(day, buf, off);
+	}
+
+	private static int writeTime(int hour, int minute, int second, char[] buf, int off) {
+		off = write2(hour, buf, off);
+		buf[off++] = ':';
+		off = write2(minute, buf, off);
+		buf[off++] = ':';
+		return write2(second, buf, off);
+	}
+
+	private static int write2(int value, char[] buf, int off) {
+		buf[off] = DIGITS_TENS[value];
+		buf[off + 1] = DIGITS_ONES[value];
+		return off + 2;
+	}
+
+	private static int write4(int value, char[] buf, int off) {
+		write2(value / 100, buf, off);
+		return write2(value % 100, buf, off + 2);
+	}
+
+	private static void setIsoDate(int year, int month, int day, StringBuilder sb, int off) {
+		set4(year, sb, off);
+		sb.setCharAt(off + 4, '-');
+		set2(month, sb, off + 5);
+		sb.setCharAt(off + 7, '-');
+		set2(day, sb, off + 8);
+	}
+
+	private static void setTime(int hour, int minute, int second, StringBuilder sb, int off) {
+		set2(hour, sb, off);
+		sb.setCharAt(off + 2, ':');
+		set2(minute, sb, off + 3);
+		sb.setCharAt(off + 5, ':');
+		set2(second, sb, off + 6);
+	}
+
+	private static void set2(int value, StringBuilder sb, int off) {
+		sb.setCharAt(off, DIGITS_TENS[value]);
+		sb.setCharAt(off + 1, DIGITS_ONES[value]);
+	}
+
+	private static void set4(int value, StringBuilder sb, int off) {
+		set2(value / 100, sb, off);
+		set2(value % 100, sb, off + 2);
+	}
+
+	private static void appendIsoDate(int year, int month, int day, Appendable out) throws IOException {
+		append4(year, out);
+		out.append('-');
+		append2(month, out);
+		out.append('-');
+		append2(day, out);
+	}
+
+	private static void appendTime(int millisOfDay, Appendable out) throws IOException {
+		append2(hour(millisOfDay), out);
+		out.append(':');
+		append2(minute(millisOfDay), out);
+		out.append(':');
+		append2(second(millisOfDay), out);
+	}
+
+	private static void append2(int value, Appendable out) throws IOException {
+		out.append(DIGITS_TENS[value]);
+		out.append(DIGITS_ONES[value]);
+	}
+
+	private static void append4(int value, Appendable out) throws IOException {
+		append2(value / 100, out);
+		append2(value % 100, out);
+	}
+
+	/**
+	 * Check whether the fast path is on for the current default locale.
+	 */
+	private static boolean enabled() {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+		Check current = check;
+		if (current.locale != locale) {
+			current = new Check(locale);
+			check = current;
+		}
+		return current.enabled;
+	}
+
+	/**
+	 * The fast path is only correct if the locale formats these patterns with a
+	 * Gregorian calendar and ASCII digits; compare against SimpleDateFormat once.
+	 */
+	private static boolean selfCheck(Locale locale) {
+		try {
+			SimpleDateFormat sdf = new SimpleDateFormat(UDate.TIMESTAMP, locale);
+			if (!(sdf.getCalendar() instanceof GregorianCalendar)) {
+				return false;
+			}
+			GregorianCalendar sample = new GregorianCalendar(2009, Calendar.DECEMBER, 31, 13, 45, 7);
+			char[] buf = new char[LENGTHS[LAYOUT_TIMESTAMP]];
+			format(LAYOUT_TIMESTAMP, 2009, 12, 31, 13, 45, 7, buf, 0);
+			return new String(buf).equals(sdf.format(sample.getTime()));
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Outcome of <code>selfCheck()</code> for one locale.
+	 */
+	private static final class Check {
+
+		final Locale locale;
+
+		final boolean enabled;
+
+		Check(Locale locale) {
+			this.locale = locale;
+			this.enabled = selfCheck(locale);
+		}
+	}
+}
@@ -0,0 +1,440 @@
+package util;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Title:        Time bucket totals.
+ * Description:  Groups a column of instants, given as milliseconds since January 1, 1970
+ *               00:00:00 GMT, by hour, day, month or year (<code>UDate.UNIT_HOURS</code>,
+ *               <code>UNIT_DAYS</code>, <code>UNIT_MONTHS</code>, <code>UNIT_YEARS</code>)
+ *               of the local time in a time zone, and computes per bucket the count and,
+ *               for a column of values, the sum, minimum and maximum.  Buckets are the
+ *               ones <code>getYear()</code>, <code>getMonth()</code>, <code>getDay()</code>
+ *               and the hour of a <code>UDate</code> would give; no date object is created
+ *               per row.  Hours are wall-clock hours, so the hour repeated when summer
+ *               time ends is one bucket.
+ *
+ *               Rows are matched against the current bucket as a range of instants over
+ *               which both the bucket and the offset from GMT stay the same (see
+ *               <code>ZoneTable</code>), so rows sorted or clustered by time cost two
+ *               comparisons each.  When the JDK Vector API is available (the optional
+ *               class <code>util.TimeBucketsVector</code>, see its documentation) whole
+ *               vectors of rows that fall into the current bucket are added at once;
+ *               otherwise, or with <code>-Dutil.TimeBuckets.vector=false</code>, rows are
+ *               added one at a time.  Inputs of 65536 rows or more are split over the
+ *               common fork-join pool, one partial result per part, merged at the end.
+ *               Sums may then differ from a sequential sum in the last bits.
+ *
+ *               Buckets are dense from the first to the last non-empty one; the result
+ *               has at most 16777216 buckets.  Empty buckets have a count and a sum of
+ *               0 and a NaN minimum and maximum.  Instants within three days of the
+ *               limits of <code>long</code> are not accepted.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class TimeBuckets {
+
+	private static final int MAX_BUCKETS = 1 << 24;
+
+	// Rows per fork-join part, at least
+	private static final int MIN_PART = 1 << 15;
+
+	// Bucket cells the partial results of one roll-up may hold together; there is one
+	// partial result per part
+	private static final long MAX_PARTIAL_CELLS = 1L << 25;
+
+	// Local time is within a day of GMT in every zone
+	private static final long MAX_OFFSET = DateMath.MILLIS_PER_DAY;
+
+	// Instants whose local times and days, a day either side, fit in a long
+	private static final long MIN_MILLIS = Long.MIN_VALUE + 3 * MAX_OFFSET;
+
+	private static final long MAX_MILLIS = Long.MAX_VALUE - 3 * MAX_OFFSET;
+
+	/**
+	 * Adds the rows of a range that fall into one bucket, several at a time.
+	 */
+	interface Kernel {
+
+		/**
+		 * Add rows from <code>from</code> on, whole vectors at a time, while every row of
+		 * the vector is in <code>[runStart, runEnd)</code>.
+		 * @param values    Values of the rows, or <code>null</code> to count only.
+		 * @return Index of the first row not added.
+		 */
+		int accumulate(long[] millis, double[] values, int from, int to, long runStart, long runEnd, double[] sums,
+				double[] mins, double[] maxs, int bucket);
+	}
+
+	private static final Kernel VECTOR = loadVector();
+
+	private final short unit;
+
+	private final TimeZone zone;
+
+	private final long firstKey;
+
+	private final long[] counts;
+
+	private final double[] sums;
+
+	private final double[] mins;
+
+	private final double[] maxs;
+
+	private TimeBuckets(short unit, TimeZone zone, long firstKey, long[] counts, double[] sums, double[] mins,
+			double[] maxs) {
+		this.unit = unit;
+		this.zone = zone;
+		this.firstKey = firstKey;
+		this.counts = counts;
+		this.sums = sums;
+		this.mins = mins;
+		this.maxs = maxs;
+	}
+
+	/**
+	 * Group instants in the default time zone.
+	 * @see #rollUp(long[], double[], short, TimeZone)
+	 */
+	public static TimeBuckets rollUp(long[] millis, double[] values, short unit) {
+		return rollUp(millis, values, unit, DateMath.defaultZone());
+	}
+
+	/**
+	 * Group instants by the local time in a time zone.
+	 * @param millis    Instants as milliseconds since January 1, 1970 00:00:00 GMT.
+	 * @param values    Value of each row, or <code>null</code> to count only.
+	 * @param unit    <code>UDate.UNIT_HOURS</code>, <code>UNIT_DAYS</code>,
+	 * <code>UNIT_MONTHS</code> or <code>UNIT_YEARS</code>.
+	 * @param zone    Time zone of the buckets.
+	 * @return The buckets.
+	 */
+	public static TimeBuckets rollUp(long[] millis, double[] values, short unit, TimeZone zone) {
+		if (unit != UDate.UNIT_HOURS && unit != UDate.UNIT_DAYS && unit != UDate.UNIT_MONTHS
+				&& unit != UDate.UNIT_YEARS) {
+			throw new IllegalArgumentException("Invalid unit: " + unit);
+		}
+		if (values != null && values.length != millis.length) {
+			throw new IllegalArgumentException("Rows: " + millis.length + ", values: " + values.length);
+		}
+		zone = DateMath.intern(zone);
+		int rows = millis.length;
+		if (rows == 0) {
+			return new TimeBuckets(unit, zone, 0, new long[0], new double[0], new double[0], new double[0]);
+		}
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		for (long m : millis) {
+			min = Math.min(min, m);
+			max = Math.max(max, m);
+		}
+		long firstKey = key(unit, clamp(min) - MAX_OFFSET);
+		long buckets = key(unit, clamp(max) + MAX_OFFSET) - firstKey + 1;
+		if (buckets <= 0 || buckets > MAX_BUCKETS) {
+			throw new IllegalArgumentException("Too many buckets: " + buckets);
+		}
+		if (min < MIN_MILLIS || max > MAX_MILLIS) {
+			throw new IllegalArgumentException("Instant out of range: " + (min < MIN_MILLIS ? min : max));
+		}
+		int parallelism = ForkJoinPool.getCommonPoolParallelism();
+		int parts = (int) Math.max(Math.min(Math.min(parallelism, rows / MIN_PART), MAX_PARTIAL_CELLS / buckets), 1);
+		Part part = new Part(millis, values, unit, zone, firstKey, (int) buckets, 0, rows, parts);
+		Totals totals = parts > 1 ? ForkJoinPool.commonPool().invoke(part) : part.compute();
+		return totals.trim(unit, zone, firstKey);
+	}
+
+	/**
+	 * Check whether rows are added through the Vector API.
+	 */
+	public static boolean isVectorized() {
+		return VECTOR != null;
+	}
+
+	/** Get the unit of the buckets. */
+	public short getUnit() {
+		return unit;
+	}
+
+	/** Get the number of buckets, empty ones between the first and the last included. */
+	public int size() {
+		return counts.length;
+	}
+
+	/**
+	 * Get the key of a bucket: local hours or days since January 1, 1970,
+	 * <code>year * 12 + month - 1</code>, or the year.
+	 * @param bucket    0 - <code>size() - 1</code>
+	 */
+	public long getKey(int bucket) {
+		checkBucket(bucket);
+		return firstKey + bucket;
+	}
+
+	/**
+	 * Get the first instant of a bucket, as milliseconds since January 1, 1970 00:00:00
+	 * GMT.  A local start that summer time skips gives the instant a calendar gives it.
+	 * @param bucket    0 - <code>size() - 1</code>
+	 */
+	public long getStartMillis(int bucket) {
+		long local = localStart(unit, getKey(bucket));
+		long date = DateMath.civil(DateMath.epochDay(local));
+		int year = DateMath.year(date);
+		GregorianCalendar cal = new GregorianCalendar(zone);
+		cal.clear();
+		cal.set(Calendar.ERA, year > 0 ? GregorianCalendar.AD : GregorianCalendar.BC);
+		cal.set(year > 0 ? year : 1 - year, DateMath.month(date) - 1, DateMath.day(date));
+		cal.set(Calendar.HOUR_OF_DAY, DateMath.millisOfDay(local) / (int) DateMath.MILLIS_PER_HOUR);
+		return cal.getTimeInMillis();
+	}
+
+	/**
+	 * Get the first instant of a bucket as a new date in the time zone of the buckets.
+	 * @param bucket    0 - <code>size() - 1</code>
+	 */
+	public UDate getStart(int bucket) {
+		return new CompactUDate(getStartMillis(bucket), zone);
+	}
+
+	/** Get the number of rows of each bucket. */
+	public long[] getCounts() {
+		return counts;
+	}
+
+	/** Get the sum of the values of each bucket. */
+	public double[] getSums() {
+		return sums;
+	}
+
+	/** Get the smallest value of each bucket, NaN if it is empty. */
+	public double[] getMins() {
+		return mins;
+	}
+
+	/** Get the largest value of each bucket, NaN if it is empty. */
+	public double[] getMaxs() {
+		return maxs;
+	}
+
+	private void checkBucket(int bucket) {
+		if (bucket < 0 || bucket >= counts.length) {
+			throw new IndexOutOfBoundsException("Bucket: " + bucket + ", size: " + counts.length);
+		}
+	}
+
+	private static long clamp(long millis) {
+		return Math.min(Math.max(millis, MIN_MILLIS), MAX_MILLIS);
+	}
+
+	/**
+	 * Key of the bucket of a local time.
+	 */
+	static long key(short unit, long local) {
+		switch (unit) {
+		case UDate.UNIT_HOURS:
+			return Math.floorDiv(local, DateMath.MILLIS_PER_HOUR);
+		case UDate.UNIT_DAYS:
+			return DateMath.epochDay(local);
+		case UDate.UNIT_MONTHS:
+			long date = DateMath.civil(DateMath.epochDay(local));
+			return DateMath.year(date) * 12L + DateMath.month(date) - 1;
+		default:
+			return DateMath.year(DateMath.civil(DateMath.epochDay(local)));
+		}
+	}
+
+	/**
+	 * First local time of a bucket.
+	 */
+	static long localStart(short unit, long key) {
+		switch (unit) {
+		case UDate.UNIT_HOURS:
+			return key * DateMath.MILLIS_PER_HOUR;
+		case UDate.UNIT_DAYS:
+			return key * DateMath.MILLIS_PER_DAY;
+		case UDate.UNIT_MONTHS:
+			return DateMath.toEpochDay(Math.floorDiv(key, 12), (int) Math.floorMod(key, 12L) + 1, 1)
+					* DateMath.MILLIS_PER_DAY;
+		default:
+			return DateMath.toEpochDay(key, 1, 1) * DateMath.MILLIS_PER_DAY;
+		}
+	}
+
+	private static Kernel loadVector() {
+		if (!Boolean.parseBoolean(System.getProperty("util.TimeBuckets.vector", "true"))) {
+			return null;
+		}
+		try {
+			return (Kernel) Class.forName("util.TimeBucketsVector").getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			return null;
+		} catch (LinkageError e) {
+			// compiled without the jdk.incubator.vector module, or run without it
+			return null;
+		}
+	}
+
+	/**
+	 * Totals of a range of rows, over every bucket of the roll-up.
+	 */
+	private static final class Totals {
+		final long[] counts;
+		final double[] sums;
+		final double[] mins;
+		final double[] maxs;
+
+		Totals(int buckets, boolean values) {
+			counts = new long[buckets];
+			sums = new double[values ? buckets : 0];
+			mins = new double[values ? buckets : 0];
+			maxs = new double[values ? buckets : 0];
+			Arrays.fill(mins, Double.POSITIVE_INFINITY);
+			Arrays.fill(maxs, Double.NEGATIVE_INFINITY);
+		}
+
+		void merge(Totals other) {
+			for (int b = 0; b < counts.length; b++) {
+				counts[b] += other.counts[b];
+			}
+			for (int b = 0; b < sums.length; b++) {
+				sums[b] += other.sums[b];
+				mins[b] = Math.min(mins[b], other.mins[b]);
+				maxs[b] = Math.max(maxs[b], other.maxs[b]);
+			}
+		}
+
+		TimeBuckets trim(short unit, TimeZone zone, long firstKey) {
+			int first = 0;
+			while (first < counts.length && counts[first] == 0) {
+				first++;
+			}
+			int end = counts.length;
+			while (end > first && counts[end - 1] == 0) {
+				end--;
+			}
+			double[] s = new double[end - first];
+			double[] lo = new double[end - first];
+			double[] hi = new double[end - first];
+			for (int b = first; b < end; b++) {
+				boolean empty = counts[b] == 0 || sums.length == 0;
+				s[b - first] = sums.length == 0 ? 0 : sums[b];
+				lo[b - first] = empty ? Double.NaN : mins[b];
+				hi[b - first] = empty ? Double.NaN : maxs[b];
+			}
+			return new TimeBuckets(unit, zone, firstKey + first, Arrays.copyOfRange(counts, first, end), s, lo, hi);
+		}
+	}
+
+	/**
+	 * Rolls up rows <code>[from, to)</code> in <code>parts</code> parts of nearly equal
+	 * size, splitting the parts in halves, so there are exactly <code>parts</code>
+	 * partial results.
+	 */
+	private static final class Part extends RecursiveTask<Totals> {
+		private static final long serialVersionUID = 1L;
+
+		private final long[] millis;
+		private final double[] values;
+		private final short unit;
+		private final TimeZone zone;
+		private final long firstKey;
+		private final int buckets;
+		private final int from;
+		private final int to;
+		private final int parts;
+
+		// Current run: rows in [runStart, runEnd) go to bucket
+		private long runStart = 1;
+		private long runEnd = 0;
+		private int bucket;
+
+		Part(long[] millis, double[] values, short unit, TimeZone zone, long firstKey, int buckets, int from, int to,
+				int parts) {
+			this.millis = millis;
+			this.values = values;
+			this.unit = unit;
+			this.zone = zone;
+			this.firstKey = firstKey;
+			this.buckets = buckets;
+			this.from = from;
+			this.to = to;
+			this.parts = parts;
+		}
+
+		protected Totals compute() {
+			if (parts > 1) {
+				int leftParts = parts / 2;
+				int mid = (int) (from + (long) (to - from) * leftParts / parts);
+				Part left = new Part(millis, values, unit, zone, firstKey, buckets, from, mid, leftParts);
+				left.fork();
+				Totals right = new Part(millis, values, unit, zone, firstKey, buckets, mid, to, parts - leftParts)
+						.compute();
+				Totals totals = left.join();
+				totals.merge(right);
+				return totals;
+			}
+			Totals totals = new Totals(buckets, values != null);
+			add(totals);
+			return totals;
+		}
+
+		private void add(Totals totals) {
+			long[] counts = totals.counts;
+			double[] sums = totals.sums;
+			double[] mins = totals.mins;
+			double[] maxs = totals.maxs;
+			boolean hit = false;
+			int i = from;
+			while (i < to) {
+				long m = millis[i];
+				if (m < runStart || m >= runEnd) {
+					run(m);
+					hit = false;
+				} else if (hit && VECTOR != null) {
+					// the previous row was in this bucket too: try whole vectors
+					int next = VECTOR.accumulate(millis, values, i, to, runStart, runEnd, sums, mins, maxs, bucket);
+					if (next > i) {
+						counts[bucket] += next - i;
+						i = next;
+						continue;
+					}
+					hit = false;
+				}
+				counts[bucket]++;
+				if (values != null) {
+					double v = values[i];
+					sums[bucket] += v;
+					mins[bucket] = Math.min(mins[bucket], v);
+					maxs[bucket] = Math.max(maxs[bucket], v);
+				}
+				hit = true;
+				i++;
+			}
+		}
+
+		/**
+		 * Find the bucket of an instant and the instants around it that share both its
+		 * bucket and its offset.
+		 */
+		private void run(long m) {
+			int offset = DateMath.offset(zone, m);
+			long local = m + offset;
+			long key = key(unit, local);
+			if (key < firstKey || key - firstKey >= buckets) {
+				throw new IllegalArgumentException("Offset out of range: " + offset);
+			}
+			ZoneTable table = ZoneTable.get(zone);
+			long start = localStart(unit, key) - offset;
+			long end = localStart(unit, key + 1) - offset;
+			runStart = table == null ? m : Math.max(start, table.runStart(m));
+			runEnd = table == null ? m + 1 : Math.min(end, table.runEnd(m));
+			bucket = (int) (key - firstKey);
+		}
+	}
+}
@@ -7,12 +7,16 @@ import static java.util.Calendar.MONTH;
 import static java.util.Calendar.SECOND;
 import static java.util.Calendar.YEAR;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.sql.Timestamp;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.TimeZone;
 
 /**
  * Title:        Universal Date object.
@@ -53,6 +57,12 @@ public class UDate implements java.io.Serializable{
 	 * 
 	 */
 	private static final long serialVersionUID = 1L;
+
+	// cal, or null and the compact form written by writeObject()
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("cal", GregorianCalendar.class),
+			new ObjectStreamField("compact", Boolean.TYPE) };
+
 	// Some standard formats
 	public static final String TIMESTAMP = "yyyy-MM-dd HH:mm:ss";
 	public static final String DATESTAMP = "yyyy-MM-dd";
@@ -85,8 +95,12 @@ public class UDate implements java.io.Serializable{
 
 	protected GregorianCalendar cal = null;
 
+	// true while cal may also be referenced by a copy; cleared by unshare()
+	private transient boolean shared = false;
+
 	protected void initialize(GregorianCalendar inCal) {
 		cal = inCal;
+		shared = false;
 	}
 
 	/**
@@ -97,6 +111,15 @@ public class UDate implements java.io.Serializable{
 		this.initialize(cal);
 	}
 
+	/**
+	 *  Construct around the specified calendar, which is used as is.
+	 *  Subclasses that keep the date in another form pass <code>null</code>
+	 *  and override every method that reads <code>cal</code>.
+	 */
+	protected UDate(GregorianCalendar inCal) {
+		this.initialize(inCal);
+	}
+
 	/**
 
 	 * Construct from a long value. The long value is the number of milliseconds
@@ -129,6 +152,8 @@ public class UDate implements java.io.Serializable{
 
 	/**
 	 * Construct from another UDate object.
+	 * The copy shares the calendar of the original until either of them is
+	 * adjusted, so copying is cheap and changes never leak from one to the other.
 
 	 * @param date  Another UDate object
 
@@ -138,9 +163,30 @@ public class UDate implements java.io.Serializable{
 		if (date == null) {
 			return null;
 		} else {
-			UDate newDate = new UDate();
-			newDate.initialize(date.cal);
-			return newDate;
+			return date.copy();
+		}
+	}
+
+	/**
+	 * Get an independent copy of this date, sharing the calendar copy-on-write.
+	 */
+	UDate copy() {
+		if (cal == null) {
+			return UDate.newInstance(new Date(getTimeInMillis()));
+		}
+		UDate newDate = new UDate(cal);
+		shared = true;
+		newDate.shared = true;
+		return newDate;
+	}
+
+	/**
+	 * Give this date its own calendar before it is changed, if it may share it.
+	 */
+	protected void unshare() {
+		if (shared) {
+			cal = (GregorianCalendar) cal.clone();
+			shared = false;
 		}
 	}
 
@@ -179,10 +225,15 @@ public class UDate implements java.io.Serializable{
 		else if (inDate.trim().equals(""))
 			return null;
 		else {
-			SimpleDateFormat sdf = new SimpleDateFormat(formatoData);
-			sdf.setLenient(false);
-			java.util.Date dteUtilDate = sdf.parse(inDate.trim());
-			return UDate.newInstance(dteUtilDate);
+			long start = UDateMetrics.start();
+			boolean ok = false;
+			try {
+				java.util.Date dteUtilDate = DateParser.parse(formatoData, inDate.trim(), false);
+				ok = true;
+				return UDate.newInstance(dteUtilDate);
+			} finally {
+				UDateMetrics.record(UDateMetrics.NEW_INSTANCE, formatoData, start, ok);
+			}
 		}
 	}
 
@@ -262,6 +313,26 @@ public class UDate implements java.io.Serializable{
 
 	public int getMillisecond() { return cal.get(MILLISECOND); }
 
+	/**
+
+	 * Get the date as a long value.
+
+	 * @return Number of milliseconds since January 1, 1970 00:00:00 GMT
+
+	 */
+
+	public long getTimeInMillis() { return cal.getTimeInMillis(); }
+
+	/**
+	 * Get a calendar field, as <code>Calendar.get(int)</code>.
+	 */
+	int get(int field) { return cal.get(field); }
+
+	/**
+	 * Get the time zone the date and time fields are computed in.
+	 */
+	TimeZone getTimeZone() { return cal.getTimeZone(); }
+
 	/**
 	 * Get the date in the default format (yyyy-MM-dd HH:mm:ss).
 	 */
@@ -328,8 +399,17 @@ public class UDate implements java.io.Serializable{
 
 	 */
 	public String getDate(String format) {
-		SimpleDateFormat sdf = new SimpleDateFormat(format);
-		return sdf.format(cal.getTime());
+		long start = UDateMetrics.start();
+		String date;
+		int layout = FixedDateFormat.layoutOf(format);
+		char[] buf = layout == FixedDateFormat.NONE ? null : new char[FixedDateFormat.length(layout)];
+		if (buf != null && FixedDateFormat.format(layout, getTimeInMillis(), DateMath.defaultZone(), buf, 0) >= 0) {
+			date = new String(buf);
+		} else {
+			date = DateFormatCache.format(format, new Date(getTimeInMillis()));
+		}
+		UDateMetrics.record(UDateMetrics.GET_DATE, format, start, true);
+		return date;
 	}
 
 	/**
@@ -357,10 +437,25 @@ public class UDate implements java.io.Serializable{
 
 	/**
 	 * Get the date in the default format (yyyy-MM-dd HH:mm:ss).
+	 * To pass the date to a statement without changing its SQL text, bind it with
+	 * <code>UDateBinder</code> instead.
 	 * @return Date as a string wrapped in single quotes.
 
 	 */
 	public String getDateForDB() {
+		int layout = FixedDateFormat.layoutOf(TIMESTAMP);
+		if (layout != FixedDateFormat.NONE) {
+			long start = UDateMetrics.start();
+			char[] buf = new char[FixedDateFormat.length(layout) + 2];
+			int end = FixedDateFormat.format(layout, getTimeInMillis(), DateMath.defaultZone(), buf, 1);
+			if (end >= 0) {
+				buf[0] = '\'';
+				buf[end] = '\'';
+				String date = new String(buf);
+				UDateMetrics.record(UDateMetrics.GET_DATE, TIMESTAMP, start, true);
+				return date;
+			}
+		}
 		return "'" + this.getDate() + "'";
 	}
 
@@ -524,6 +619,28 @@ c     */
 
 	public void adjust(short unit, int amount) {
 
+		if (calendarField(unit) < 0) {
+
+			return;
+
+		}
+
+		unshare();
+
+		if (cal.getGregorianChange().getTime() == DateMath.GREGORIAN_CUTOVER_MILLIS) {
+
+			long millis = DateMath.addArithmetic(cal.getTimeZone(), cal.getTimeInMillis(), calendarField(unit), amount);
+
+			if (millis != DateMath.NO_RESULT) {
+
+				cal.setTimeInMillis(millis);
+
+				return;
+
+			}
+
+		}
+
 		if (unit == UNIT_DAYS) {
 
 			cal.add(Calendar.DAY_OF_YEAR, amount);
@@ -557,6 +674,31 @@ c     */
 	}
 	
 
+	/**
+	 * Get the calendar field changed by <code>adjust()</code> for the specified unit.
+	 * @return A <code>Calendar</code> field, -1 if the unit is ignored.
+	 */
+	static int calendarField(short unit) {
+		switch (unit) {
+		case UNIT_DAYS:
+			return Calendar.DAY_OF_YEAR;
+		case UNIT_MONTHS:
+			return Calendar.MONTH;
+		case UNIT_YEARS:
+			return Calendar.YEAR;
+		case UNIT_HOURS:
+			return Calendar.HOUR;
+		case UNIT_MINUTES:
+			return Calendar.MINUTE;
+		case UNIT_SECONDS:
+			return Calendar.SECOND;
+		case UNIT_MILLISECONDS:
+			return Calendar.MILLISECOND;
+		default:
+			return -1;
+		}
+	}
+
 	/**
 	 *Converte una data di tipo java.util.Date in una data java.sql.Date
 	 */
@@ -579,7 +721,6 @@ c     */
 	public static Date estraiData(String ingresso)throws java.text.ParseException
 	{
 		Date uscita;
-		SimpleDateFormat sdf=new SimpleDateFormat(TIMESTAMP);
 
 		if(ingresso == null)
 		{
@@ -587,7 +728,17 @@ c     */
 		}
 		else
 		{
-			uscita=sdf.parse(ingresso);
+			long start=UDateMetrics.start();
+			boolean ok=false;
+			try
+			{
+				uscita=DateParser.parse(TIMESTAMP, ingresso, true);
+				ok=true;
+			}
+			finally
+			{
+				UDateMetrics.record(UDateMetrics.ESTRAI_DATA, TIMESTAMP, start, ok);
+			}
 		}
 		return uscita;
 	}
@@ -602,8 +753,6 @@ c     */
 	public static Date ctrlData(String ingresso)throws java.text.ParseException
 	{
 		Date uscita=null;
-		SimpleDateFormat sdf=new SimpleDateFormat(formatoData);
-		sdf.setLenient(false);
 
 		if(ingresso.equals(""))
 		{
@@ -611,7 +760,17 @@ c     */
 		}
 		else
 		{
-			uscita=sdf.parse(ingresso);
+			long start=UDateMetrics.start();
+			boolean ok=false;
+			try
+			{
+				uscita=DateParser.parse(formatoData, ingresso, false);
+				ok=true;
+			}
+			finally
+			{
+				UDateMetrics.record(UDateMetrics.CTRL_DATA, formatoData, start, ok);
+			}
 		}
 
 		return uscita;
@@ -624,14 +783,15 @@ c     */
 	public static String inserisciStringa(Date ingresso)
 	{
 		String uscita;
-		SimpleDateFormat sdf=new SimpleDateFormat(formatoData);
 		if(ingresso == null)
 		{
 			uscita=null;
 		}
 		else
 		{
-			uscita=sdf.format(ingresso);
+			long start=UDateMetrics.start();
+			uscita=DateFormatCache.format(formatoData, ingresso);
+			UDateMetrics.record(UDateMetrics.INSERISCI_STRINGA, formatoData, start, true);
 		}
 		return uscita;
 	}
@@ -643,14 +803,15 @@ c     */
 	public static String ctrlStringa(Date ingresso)
 	{
 		String uscita;
-		SimpleDateFormat sdf=new SimpleDateFormat(formatoData);
 		if(ingresso==null)
 		{
 			uscita="";	
 		}
 		else
 		{
-			uscita=sdf.format(ingresso);
+			long start=UDateMetrics.start();
+			uscita=DateFormatCache.format(formatoData, ingresso);
+			UDateMetrics.record(UDateMetrics.CTRL_STRINGA, formatoData, start, true);
 		}
 		return uscita;
 	}
@@ -666,144 +827,89 @@ c     */
 	 *Questo metodo consente la formattazione della stringa
 	 *inserita nel campo data; sono previste diverse modalit�
 	 *di inserimento della data.
+	 *Le forme riconosciute sono descritte in DateNormalizer.
 	 */
 	public static String formatta(String strData)
 	{
-
-		String formatData = "";
-		String dd = "";
-		String MM = "";
-		String yy = "";
-		if(strData.equals(""))
-		{
-			formatData = "";
-		}
-		else if(strData.length()==6)
-		{
-			//se strData � d.M.yy, oppure d-M-yy, ecc.
-			if(strData.substring(1,2).equals("/")|strData.substring(1,2).equals(".")|strData.substring(1,2).equals("-")|strData.substring(1,2).equals(" "))
-			{
-				dd = strData.substring(0,1);
-				MM = strData.substring(2,3);
-				yy = strData.substring(4,6);
-				formatData = "0" + dd + "/0" + MM + "/" + yy;
-			}
-			//se strData � ddMMyy
-			else
-			{
-				dd = strData.substring(0,2);
-				MM = strData.substring(2,4);
-				yy = strData.substring(4,6);
-				formatData = dd + "/" + MM + "/" + yy;
-			}
-		}
-		else if(strData.length()==7)
-		{
-			//se strData � d.MM.yy, oppure d-MM-yy, ecc
-			if(strData.substring(1,2).equals("/")|strData.substring(1,2).equals(".")|strData.substring(1,2).equals("-")|strData.substring(1,2).equals(" "))
-			{
-				dd = strData.substring(0,1);
-				MM = strData.substring(2,4);
-				yy = strData.substring(5,7);
-				formatData = "0" + dd + "/" + MM + "/" + yy;
-			}
-			//se strData � dd.M.yy, oppure dd-M-yy, ecc
-			else
-			{
-				dd = strData.substring(0,2);
-				MM = strData.substring(3,4);
-				yy = strData.substring(5,7);
-				formatData = dd + "/0" + MM + "/" + yy;
-			}
-		}
-		else if(strData.length()==8)
-		{
-			//se strData � d.M.yyyy, oppure d-M-yyyy, ecc
-			if(strData.substring(1,2).equals("/")|strData.substring(1,2).equals(".")|strData.substring(1,2).equals("-")|strData.substring(1,2).equals(" "))
-			{
-				dd = strData.substring(0,1);
-				MM = strData.substring(2,3);
-				yy = strData.substring(4,8);
-				formatData = "0" + dd + "/0" + MM + "/" + yy;
-			}
-			//se strData � dd.MM.yy, oppure dd-MM-yy, ecc.
-			else if(strData.substring(2,3).equals("/")|strData.substring(2,3).equals(".")|strData.substring(2,3).equals("-")|strData.substring(2,3).equals(" "))
-			{
-				dd = strData.substring(0,2);
-				MM = strData.substring(3,5);
-				yy = strData.substring(6,8);
-				formatData = dd + "/" + MM + "/" + yy;
-			}
-			//se strData � ddMMyyyy
-			else
-			{
-				dd = strData.substring(0,2);
-				MM = strData.substring(2,4);
-				yy = strData.substring(4,8);
-				formatData = dd + "/" + MM + "/" + yy;
-			}
-		}
-		else if(strData.length()==9)
-		{
-			//se strData � d.MM.yyyy, oppure d-MM-yyyy, ecc
-			if(strData.substring(1,2).equals("/")|strData.substring(1,2).equals(".")|strData.substring(1,2).equals("-")|strData.substring(1,2).equals(" "))
-			{
-				dd = strData.substring(0,1);
-				MM = strData.substring(2,4);
-				yy = strData.substring(5,9);
-				formatData = "0" + dd + "/" + MM + "/" + yy;
-			}
-			//se strData � dd.M.yyyy, oppure dd-M-yyyy, ecc
-			else
-			{
-				dd = strData.substring(0,2);
-				MM = strData.substring(3,4);
-				yy = strData.substring(5,9);
-				formatData = dd + "/0" + MM + "/" + yy;
-			}
-		}
-		// se del tipo 'yyyy-MM-dd'
-		else if (strData.length() == 10 && isInteger(strData.substring(0,4)))
-		{
-			dd = strData.substring(8,10);
-			MM = strData.substring(5,7);
-			yy = strData.substring(0,4);
-			formatData = dd + "/" + MM + "/" + yy;
-		}
-		//se strData � dd.MM.yyyy, oppure dd-MM-yyyy, ecc.
-		else if(strData.length()==10)
-		{
-			dd = strData.substring(0,2);
-			MM = strData.substring(3,5);
-			yy = strData.substring(6,10);
-			formatData = dd + "/" + MM + "/" + yy;
-		}
-		//se del tipo 'yyyy-mm-dd hh:mm:ss'
-		//@ Review by Mirko
-		else if(strData.length()==19 && isInteger(strData.substring(0,4)) )
-		{
-			dd = strData.substring(8,10);
-			MM = strData.substring(5,7);
-			yy = strData.substring(0,4);
-			formatData = dd + "/" + MM + "/" + yy;
-		}
-		return formatData;
+		long start = UDateMetrics.start();
+		char[] buf = new char[DateNormalizer.MAX_LENGTH];
+		int len = DateNormalizer.normalize(strData, buf, 0);
+		UDateMetrics.recordFormatta(start, len);
+		return (len == 0) ? "" : new String(buf, 0, len);
 	}
 
-	private static boolean isInteger(String substring) {
-		boolean isInteger = true;
-		try {
-			Integer.parseInt(substring);
-		} catch (NumberFormatException e) {
-			isInteger = false;
-		}
-		return isInteger;
+	/**
+	 *Come formatta(String), ma scrive la data nel buffer indicato
+	 *senza creare oggetti; il buffer deve avere almeno 10 caratteri
+	 *liberi a partire da off.
+	 *Restituisce il numero di caratteri scritti, 0 se la data non
+	 *e' riconosciuta.
+	 */
+	public static int formatta(CharSequence strData, char[] buf, int off)
+	{
+		long start = UDateMetrics.start();
+		int len = DateNormalizer.normalize(strData, buf, off);
+		UDateMetrics.recordFormatta(start, len);
+		return len;
 	}
 
 	//*******************************************************************************************
 	//    Fine Sezione aggiunta da Maurizio Di Michele il 14 Marzo 2006
 	//*******************************************************************************************    
 
+	/**
+	 * Write the date as milliseconds, week settings and a reference to the time zone ID
+	 * instead of the whole calendar, when a default calendar can rebuild it: lenient,
+	 * default cutover and a zone whose rules are the ones of its ID.  Otherwise, and for
+	 * subclasses without a calendar, the calendar is written as before.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		boolean compact = isCompactSerializable();
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("cal", compact ? null : cal);
+		fields.put("compact", compact);
+		out.writeFields();
+		if (compact) {
+			out.writeLong(cal.getTimeInMillis());
+			out.writeByte(cal.getFirstDayOfWeek() << 4 | cal.getMinimalDaysInFirstWeek());
+			// written once per stream, then by handle
+			out.writeObject(cal.getTimeZone().getID());
+		}
+	}
+
+	/**
+	 * Read either form; streams written before the compact form have no
+	 * <code>compact</code> field and always carry the calendar.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		cal = (GregorianCalendar) fields.get("cal", null);
+		if (fields.get("compact", false)) {
+			long millis = in.readLong();
+			int week = in.readByte();
+			TimeZone zone = DateMath.intern(TimeZone.getTimeZone((String) in.readObject()));
+			GregorianCalendar newCal = new GregorianCalendar(zone);
+			newCal.setFirstDayOfWeek(week >> 4);
+			newCal.setMinimalDaysInFirstWeek(week & 0xF);
+			newCal.setTimeInMillis(millis);
+			cal = newCal;
+			shared = false;
+		} else {
+			// copies written to the same stream come back sharing one calendar
+			shared = cal != null;
+		}
+	}
+
+	private boolean isCompactSerializable() {
+		if (cal == null || cal.getClass() != GregorianCalendar.class || !cal.isLenient()
+				|| cal.getGregorianChange().getTime() != DateMath.GREGORIAN_CUTOVER_MILLIS) {
+			return false;
+		}
+		TimeZone zone = cal.getTimeZone();
+		TimeZone byId = TimeZone.getTimeZone(zone.getID());
+		return byId.getID().equals(zone.getID()) && byId.hasSameRules(zone);
+	}
+
 	//*******************************************************************************************
 	//    Metodo aggiunto da Gaetanino Paolone Marzo 2006
 	//*******************************************************************************************    
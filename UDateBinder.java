@@ -0,0 +1,168 @@
+package util;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+/**
+ * Title:        PreparedStatement binding of UDate values.
+ * Description:  Binds <code>UDate</code> objects as statement parameters instead of
+ *               quoting them into the SQL text with <code>getDateForDB()</code> or
+ *               <code>getTimeForDB()</code>.  The SQL text then stays the same for every
+ *               date, so the database parses it once and reuses the plan, and there is
+ *               nothing to escape.  A <code>null</code> date is bound as SQL NULL.
+ *
+ *               Timestamps and times are bound in whole seconds, as the literals of
+ *               <code>getDateForDB()</code> and <code>getTimeForDB()</code> have them, so
+ *               a statement switched to binding stores the same values; bind
+ *               <code>getDateAsTimestamp()</code> directly to keep the milliseconds.
+ *
+ *               Instead of:
+ *                   stmt.executeUpdate("UPDATE ORDINE SET DATA = " + d.getDateForDB() + " WHERE ID = " + id);
+ *               use:
+ *                   PreparedStatement ps = con.prepareStatement("UPDATE ORDINE SET DATA = ? WHERE ID = ?");
+ *                   UDateBinder.setTimestamp(ps, 1, d);
+ *                   ps.setInt(2, id);
+ *                   ps.executeUpdate();
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class UDateBinder {
+
+	/**
+	 * Binds the parameters of one row of a batch.
+	 */
+	public interface RowBinder<T> {
+
+		/**
+		 * Set the parameters of the statement for a row.
+		 * @param ps    Statement to bind.
+		 * @param row    Row to bind.
+		 * @throws SQLException
+		 */
+		void bind(PreparedStatement ps, T row) throws SQLException;
+	}
+
+	private UDateBinder() {
+	}
+
+	/**
+	 * Bind a date and time, as <code>getDateForDB()</code> would write it: the
+	 * milliseconds are dropped.
+	 * @param ps    Statement to bind.
+	 * @param index    Parameter index, 1 for the first one.
+	 * @param date    Value; <code>null</code> binds SQL NULL.
+	 * @throws SQLException
+	 */
+	public static void setTimestamp(PreparedStatement ps, int index, UDate date) throws SQLException {
+		if (date == null) {
+			ps.setNull(index, Types.TIMESTAMP);
+		} else {
+			ps.setTimestamp(index, new Timestamp(seconds(date)));
+		}
+	}
+
+	/**
+	 * Bind a date (the time of day is dropped by the driver).
+	 * @param ps    Statement to bind.
+	 * @param index    Parameter index, 1 for the first one.
+	 * @param date    Value; <code>null</code> binds SQL NULL.
+	 * @throws SQLException
+	 */
+	public static void setDate(PreparedStatement ps, int index, UDate date) throws SQLException {
+		if (date == null) {
+			ps.setNull(index, Types.DATE);
+		} else {
+			ps.setDate(index, date.getDateAsDate());
+		}
+	}
+
+	/**
+	 * Bind a time of day, as <code>getTimeForDB()</code> would write it: the
+	 * milliseconds are dropped.
+	 * @param ps    Statement to bind.
+	 * @param index    Parameter index, 1 for the first one.
+	 * @param date    Value; <code>null</code> binds SQL NULL.
+	 * @throws SQLException
+	 */
+	public static void setTime(PreparedStatement ps, int index, UDate date) throws SQLException {
+		if (date == null) {
+			ps.setNull(index, Types.TIME);
+		} else {
+			ps.setTime(index, new Time(seconds(date)));
+		}
+	}
+
+	/**
+	 * Execute a statement with one date and time parameter once per date, in batches.
+	 * @param ps    Statement with the date at parameter <code>index</code> and no other
+	 * parameter left to bind per row.
+	 * @param index    Parameter index, 1 for the first one.
+	 * @param dates    Values; <code>null</code> elements bind SQL NULL.
+	 * @param batchSize    Rows per <code>executeBatch()</code>, greater than 0.
+	 * @return Sum of the update counts; see <code>executeBatch(PreparedStatement, Iterable, RowBinder, int)</code>.
+	 * @throws SQLException
+	 */
+	public static long executeBatch(PreparedStatement ps, final int index, Iterable<? extends UDate> dates,
+			int batchSize) throws SQLException {
+		return executeBatch(ps, dates, new RowBinder<UDate>() {
+			public void bind(PreparedStatement statement, UDate date) throws SQLException {
+				setTimestamp(statement, index, date);
+			}
+		}, batchSize);
+	}
+
+	/**
+	 * Execute a statement once per row, in batches of <code>batchSize</code> rows.
+	 * @param ps    Statement to execute.
+	 * @param rows    Rows to bind.
+	 * @param binder    Sets the parameters of a row.
+	 * @param batchSize    Rows per <code>executeBatch()</code>, greater than 0.
+	 * @return Sum of the update counts; a row the driver reports as
+	 * <code>Statement.SUCCESS_NO_INFO</code> counts as 1.
+	 * @throws SQLException
+	 */
+	public static <T> long executeBatch(PreparedStatement ps, Iterable<? extends T> rows, RowBinder<? super T> binder,
+			int batchSize) throws SQLException {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		long updated = 0;
+		int pending = 0;
+		for (T row : rows) {
+			binder.bind(ps, row);
+			ps.addBatch();
+			if (++pending == batchSize) {
+				updated += sum(ps.executeBatch());
+				pending = 0;
+			}
+		}
+		if (pending > 0) {
+			updated += sum(ps.executeBatch());
+		}
+		return updated;
+	}
+
+	/**
+	 * Get the instant of a date, down to the whole second before it.
+	 */
+	private static long seconds(UDate date) {
+		return Math.floorDiv(date.getTimeInMillis(), DateMath.MILLIS_PER_SECOND) * DateMath.MILLIS_PER_SECOND;
+	}
+
+	private static long sum(int[] counts) {
+		long sum = 0;
+		for (int count : counts) {
+			if (count > 0) {
+				sum += count;
+			} else if (count == Statement.SUCCESS_NO_INFO) {
+				sum++;
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,211 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Title:        Interning cache of dates.
+ * Description:  A bounded cache, keyed by milliseconds since January 1, 1970 00:00:00 GMT,
+ *               for inputs that repeat heavily (order dates, period boundaries, ...).
+ *               <code>value()</code> returns one shared, immutable <code>UDateValue</code>
+ *               per instant; <code>newInstance()</code> returns a <code>UDate</code> that
+ *               shares the calendar of a cached date copy-on-write, so a hit builds no
+ *               <code>GregorianCalendar</code> at all.
+ *
+ *               Entries are kept in the default time zone current at lookup time; a
+ *               change of default time zone simply misses.  Eviction is least recently
+ *               used, per stripe: the cache is split by key into independently locked
+ *               stripes of <code>maximumSize / stripes</code> entries each.  Hits, misses
+ *               and evictions are counted so that the cache can be sized.
+ *               Safe for use by multiple threads.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class UDateCache {
+
+	private static final int STRIPES = 16;
+
+	private final Stripe[] stripes;
+
+	private final int maximumSize;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * Cached instant.  The template is never adjusted and only handed out through
+	 * copy-on-write copies; its calendar is only read after construction.
+	 */
+	private static final class Entry {
+		final UDateValue value;
+		UDate template;
+
+		Entry(UDateValue value) {
+			this.value = value;
+		}
+	}
+
+	/**
+	 * One independently locked LRU map.
+	 */
+	private final class Stripe extends LinkedHashMap<Long, Entry> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Stripe(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+			if (size() > capacity) {
+				evictions.increment();
+				return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Construct a cache.
+	 * @param maximumSize    Maximum number of cached instants, greater than 0.
+	 */
+	public UDateCache(int maximumSize) {
+		if (maximumSize <= 0) {
+			throw new IllegalArgumentException("Invalid maximum size: " + maximumSize);
+		}
+		int count = Math.min(STRIPES, maximumSize);
+		this.maximumSize = maximumSize;
+		this.stripes = new Stripe[count];
+		for (int i = 0; i < count; i++) {
+			stripes[i] = new Stripe((maximumSize + count - 1 - i) / count);
+		}
+	}
+
+	/**
+	 * Get the shared value of an instant, in the default time zone.
+	 * @param longValue Number of milliseconds since January 1, 1970 00:00:00 GMT
+	 */
+	public UDateValue value(long longValue) {
+		TimeZone zone = DateMath.defaultZone();
+		Stripe stripe = stripe(longValue);
+		synchronized (stripe) {
+			return entry(stripe, longValue, zone).value;
+		}
+	}
+
+	/**
+	 * Same as <code>UDate.newInstance(long)</code>, through the cache.
+	 * @param longValue Number of milliseconds since January 1, 1970 00:00:00 GMT
+	 * @return new UDate initialized to the specified time, <code>null</code> if longValue < 0
+	 */
+	public UDate newInstance(long longValue) {
+		if (longValue < 0) {
+			return null;
+		}
+		TimeZone zone = DateMath.defaultZone();
+		Stripe stripe = stripe(longValue);
+		synchronized (stripe) {
+			Entry entry = entry(stripe, longValue, zone);
+			if (entry.template == null) {
+				entry.template = entry.value.toUDate();
+				// settle the calendar's lazy zone copy while it is still private
+				entry.template.getTimeZone();
+			}
+			return entry.template.copy();
+		}
+	}
+
+	/**
+	 * Same as <code>UDate.newInstance(java.util.Date)</code>, through the cache.
+	 * @param inDate    Date as a java.util.Date or java.sql.Date
+	 * @return New UDate object set to the specified date and time, <code>null</code> if
+	 * inDate is null.
+	 */
+	public UDate newInstance(java.util.Date inDate) {
+		if (inDate == null) {
+			return null;
+		}
+		long longValue = inDate.getTime();
+		if (longValue < 0) {
+			return UDate.newInstance(inDate);
+		}
+		return newInstance(longValue);
+	}
+
+	/** Get the number of lookups that found the instant in the cache. */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/** Get the number of lookups that had to create the instant. */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/** Get the number of instants dropped to make room for new ones. */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/** Get the share of lookups that were hits, 0 - 1. */
+	public double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	/** Get the maximum number of cached instants. */
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	/** Get the number of cached instants. */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				size += stripe.size();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Remove every cached instant.  The counters are kept.
+	 */
+	public void clear() {
+		for (Stripe stripe : stripes) {
+			synchronized (stripe) {
+				stripe.clear();
+			}
+		}
+	}
+
+	private Stripe stripe(long key) {
+		int h = Long.hashCode(key);
+		h ^= h >>> 16;
+		return stripes[(h & 0x7FFFFFFF) % stripes.length];
+	}
+
+	/**
+	 * Find or create the entry of an instant; the stripe must be locked.
+	 */
+	private Entry entry(Stripe stripe, long key, TimeZone zone) {
+		Long boxed = Long.valueOf(key);
+		Entry entry = stripe.get(boxed);
+		if (entry != null && entry.value.zone() == zone) {
+			hits.increment();
+			return entry;
+		}
+		misses.increment();
+		entry = new Entry(UDateValue.of(key, zone));
+		stripe.put(boxed, entry);
+		return entry;
+	}
+}
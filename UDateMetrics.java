@@ -0,0 +1,410 @@
+package util;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Title:        Date handling metrics.
+ * Description:  Opt-in counters of the time spent parsing and formatting dates in
+ *               <code>UDate</code>: the parse entry points (<code>newInstance(String)</code>,
+ *               <code>ctrlData</code>, <code>estraiData</code>), the format entry points
+ *               (<code>getDate*</code> and <code>getTime*</code>, recorded as
+ *               <code>getDate</code>, <code>inserisciStringa</code>, <code>ctrlStringa</code>)
+ *               and <code>formatta</code>.
+ *
+ *               For every operation and pattern there are a call counter, a failure counter
+ *               (exceptions, and inputs <code>formatta</code> does not recognize) and a
+ *               latency histogram in nanoseconds; <code>formatta</code> is recorded under
+ *               the form of its result.  The histogram has 8 buckets per power of two, so
+ *               a percentile is off by at most 12.5%.  Counters are
+ *               <code>LongAdder</code> cells, so threads recording at the same time do not
+ *               contend on one memory location.
+ *
+ *               As in <code>DateFormatCache</code>, the number of patterns is bounded: each
+ *               operation keeps at most <code>MAX_PATTERNS</code> of them, and the calls
+ *               with any further pattern are added up under <code>OTHER</code>.
+ *
+ *               Metrics are off by default, and then cost each entry point one read of a
+ *               volatile flag.  They are turned on with <code>setEnabled(true)</code>, or at
+ *               startup with the system property <code>util.UDateMetrics.enabled=true</code>,
+ *               which also registers the MBean <code>util:type=UDateMetrics</code>.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class UDateMetrics {
+
+	/** Name of the MBean registered by <code>registerMBean()</code>. */
+	public static final String OBJECT_NAME = "util:type=UDateMetrics";
+
+	/** Maximum number of distinct patterns kept per operation, besides <code>OTHER</code>. */
+	public static final int MAX_PATTERNS = 64;
+
+	/** Pattern the calls are recorded under once an operation has <code>MAX_PATTERNS</code> patterns. */
+	public static final String OTHER = "other";
+
+	static final int NEW_INSTANCE = 0;
+	static final int CTRL_DATA = 1;
+	static final int ESTRAI_DATA = 2;
+	static final int GET_DATE = 3;
+	static final int INSERISCI_STRINGA = 4;
+	static final int CTRL_STRINGA = 5;
+	static final int FORMATTA = 6;
+
+	private static final String[] OPERATIONS = { "newInstance", "ctrlData", "estraiData", "getDate",
+			"inserisciStringa", "ctrlStringa", "formatta" };
+
+	/** Value of <code>start()</code> when metrics are off. */
+	static final long NOT_TIMED = Long.MIN_VALUE;
+
+	// Histogram layout: values below 2^SUB_BITS have a bucket each, then 2^SUB_BITS
+	// buckets per power of two up to 2^MAX_EXPONENT ns (about 18 minutes)
+	private static final int SUB_BITS = 3;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int MAX_EXPONENT = 39;
+	private static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) << SUB_BITS;
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	static volatile boolean enabled;
+
+	private static final List<Map<String, Stats>> STATS = new ArrayList<Map<String, Stats>>();
+
+	private static ObjectName registered;
+
+	static {
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			STATS.add(new ConcurrentHashMap<String, Stats>());
+		}
+		if (Boolean.getBoolean("util.UDateMetrics.enabled")) {
+			enabled = true;
+			registerMBean();
+		}
+	}
+
+	private UDateMetrics() {
+	}
+
+	/**
+	 * Management interface exported by <code>registerMBean()</code>.
+	 */
+	public interface MBean {
+
+		/** Check whether metrics are being recorded. */
+		boolean isEnabled();
+
+		/** Turn recording on or off. */
+		void setEnabled(boolean enabled);
+
+		/** Get the total number of recorded calls. */
+		long getCalls();
+
+		/** Get the total number of recorded failures. */
+		long getFailures();
+
+		/** Get one line per operation and pattern, see <code>UDateMetrics.report()</code>. */
+		String[] getReport();
+
+		/** Discard every recorded value. */
+		void reset();
+	}
+
+	/**
+	 * Counters of one operation and pattern.  Values are read without stopping the
+	 * recording threads, so they may be slightly out of step with each other.
+	 */
+	public static final class Stats {
+		private final LongAdder calls = new LongAdder();
+		private final LongAdder failures = new LongAdder();
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+		private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+		Stats() {
+			for (int i = 0; i < BUCKETS; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		void record(long nanos, boolean ok) {
+			calls.increment();
+			if (!ok) {
+				failures.increment();
+			}
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+			buckets[bucket(nanos)].increment();
+		}
+
+		/** Get the number of calls. */
+		public long getCalls() {
+			return calls.sum();
+		}
+
+		/** Get the number of calls that failed. */
+		public long getFailures() {
+			return failures.sum();
+		}
+
+		/** Get the total time spent, in nanoseconds. */
+		public long getTotalNanos() {
+			return totalNanos.sum();
+		}
+
+		/** Get the mean time of a call, in nanoseconds. */
+		public long getMeanNanos() {
+			long count = calls.sum();
+			return count == 0 ? 0 : totalNanos.sum() / count;
+		}
+
+		/** Get the longest call, in nanoseconds. */
+		public long getMaxNanos() {
+			return maxNanos.get();
+		}
+
+		/**
+		 * Get a percentile of the call times.
+		 * @param percentile    0 - 100
+		 * @return Upper bound in nanoseconds of the histogram bucket holding the percentile,
+		 * 0 if there are no calls.
+		 */
+		public long getPercentileNanos(double percentile) {
+			if (percentile < 0 || percentile > 100) {
+				throw new IllegalArgumentException("Invalid percentile: " + percentile);
+			}
+			long[] counts = new long[BUCKETS];
+			long total = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				counts[i] = buckets[i].sum();
+				total += counts[i];
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					return Math.min(upperBound(i), getMaxNanos());
+				}
+			}
+			return getMaxNanos();
+		}
+	}
+
+	/**
+	 * Check whether metrics are being recorded.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turn recording on or off.  Values recorded so far are kept.
+	 */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/**
+	 * Get the counters of an operation and pattern.
+	 * @param operation    Name of the <code>UDate</code> method, e.g. <code>ctrlData</code>.
+	 * @param pattern    Date format, e.g. <code>dd/MM/yyyy</code>.
+	 * @return The counters, <code>null</code> if nothing was recorded for them or the
+	 * pattern was recorded under <code>OTHER</code>.
+	 */
+	public static Stats get(String operation, String pattern) {
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			if (OPERATIONS[i].equals(operation)) {
+				return STATS.get(i).get(key(pattern));
+			}
+		}
+		throw new IllegalArgumentException("Unknown operation: " + operation);
+	}
+
+	/**
+	 * Get one line per operation and pattern recorded so far, sorted, in the form
+	 * <code>operation pattern calls=.. failures=.. mean=..ns p50=..ns p99=..ns max=..ns</code>.
+	 */
+	public static String[] report() {
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < OPERATIONS.length; i++) {
+			for (Map.Entry<String, Stats> entry : new TreeMap<String, Stats>(STATS.get(i)).entrySet()) {
+				Stats stats = entry.getValue();
+				lines.add(OPERATIONS[i] + " " + entry.getKey() + " calls=" + stats.getCalls() + " failures="
+						+ stats.getFailures() + " mean=" + stats.getMeanNanos() + "ns p50="
+						+ stats.getPercentileNanos(50) + "ns p99=" + stats.getPercentileNanos(99) + "ns max="
+						+ stats.getMaxNanos() + "ns");
+			}
+		}
+		return lines.toArray(new String[lines.size()]);
+	}
+
+	/**
+	 * Discard every recorded value.
+	 */
+	public static void reset() {
+		for (Map<String, Stats> map : STATS) {
+			map.clear();
+		}
+	}
+
+	/**
+	 * Register the MBean <code>OBJECT_NAME</code> with the platform MBean server, once.
+	 */
+	public static synchronized void registerMBean() {
+		if (registered != null) {
+			return;
+		}
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new StandardMBean(new Export(), MBean.class), name);
+			}
+			registered = name;
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+		}
+	}
+
+	/**
+	 * Start timing a call.
+	 * @return Start time, <code>NOT_TIMED</code> when metrics are off.
+	 */
+	static long start() {
+		return enabled ? System.nanoTime() : NOT_TIMED;
+	}
+
+	/**
+	 * Record a call timed with <code>start()</code>; does nothing if it was not timed.
+	 * @param operation    One of the operation constants.
+	 * @param pattern    Date format of the call.
+	 * @param start    Value returned by <code>start()</code>.
+	 * @param ok    false if the call failed.
+	 */
+	static void record(int operation, String pattern, long start, boolean ok) {
+		if (start == NOT_TIMED) {
+			return;
+		}
+		long nanos = System.nanoTime() - start;
+		Map<String, Stats> map = STATS.get(operation);
+		String key = key(pattern);
+		Stats stats = map.get(key);
+		if (stats == null) {
+			// full: MAX_PATTERNS patterns and OTHER
+			stats = map.size() > MAX_PATTERNS ? map.get(OTHER) : null;
+			if (stats == null) {
+				stats = add(map, key);
+			}
+		}
+		stats.record(nanos, ok);
+	}
+
+	/**
+	 * Get the counters of a pattern not seen yet, or the ones of <code>OTHER</code> if
+	 * the operation already has <code>MAX_PATTERNS</code> patterns.
+	 */
+	private static Stats add(Map<String, Stats> map, String key) {
+		synchronized (map) {
+			Stats stats = map.get(key);
+			if (stats == null) {
+				if (map.size() - (map.containsKey(OTHER) ? 1 : 0) >= MAX_PATTERNS) {
+					key = OTHER;
+					stats = map.get(key);
+				}
+				if (stats == null) {
+					stats = new Stats();
+					map.put(key, stats);
+				}
+			}
+			return stats;
+		}
+	}
+
+	/**
+	 * Record a <code>formatta</code> call, under the form of its result:
+	 * <code>dd/MM/yy</code>, <code>dd/MM/yyyy</code> or, for an input that is not
+	 * recognized, a failure under <code>none</code>.
+	 * @param start    Value returned by <code>start()</code>.
+	 * @param length    Length of the result.
+	 */
+	static void recordFormatta(long start, int length) {
+		if (start != NOT_TIMED) {
+			String pattern = length == 8 ? "dd/MM/yy" : length == 10 ? "dd/MM/yyyy" : "none";
+			record(FORMATTA, pattern, start, length > 0);
+		}
+	}
+
+	private static String key(String pattern) {
+		return pattern == null ? "null" : pattern;
+	}
+
+	static int bucket(long nanos) {
+		long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) (value >>> (exponent - SUB_BITS)) - SUB_COUNT;
+	}
+
+	static long upperBound(int bucket) {
+		if (bucket < SUB_COUNT) {
+			return bucket;
+		}
+		int shift = (bucket >>> SUB_BITS) - 1;
+		long lower = (long) (SUB_COUNT + (bucket & (SUB_COUNT - 1))) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
+	private static final class Export implements MBean {
+
+		public boolean isEnabled() {
+			return UDateMetrics.isEnabled();
+		}
+
+		public void setEnabled(boolean on) {
+			UDateMetrics.setEnabled(on);
+		}
+
+		public long getCalls() {
+			long calls = 0;
+			for (Map<String, Stats> map : STATS) {
+				for (Stats stats : map.values()) {
+					calls += stats.getCalls();
+				}
+			}
+			return calls;
+		}
+
+		public long getFailures() {
+			long failures = 0;
+			for (Map<String, Stats> map : STATS) {
+				for (Stats stats : map.values()) {
+					failures += stats.getFailures();
+				}
+			}
+			return failures;
+		}
+
+		public String[] getReport() {
+			return UDateMetrics.report();
+		}
+
+		public void reset() {
+			UDateMetrics.reset();
+		}
+	}
+}
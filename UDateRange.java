@@ -0,0 +1,282 @@
+package util;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TimeZone;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Title:        Date range.
+ * Description:  An immutable, indexed sequence of dates between two bounds: every
+ *               <code>step</code> units of one of the <code>UDate.UNIT_*</code> constants,
+ *               every day, or every month end.  Nothing is stored per element; element
+ *               <code>i</code> is computed when it is asked for, as the start adjusted by
+ *               <code>i * step</code> (see <code>UDateSequence</code>).
+ *
+ *               The spliterator splits by index, so each half of a split covers the same
+ *               number of days (or months) and <code>parallel()</code> streams spread the
+ *               work evenly over the fork-join pool.  <code>stream()</code> creates one
+ *               <code>CompactUDate</code> per element; <code>epochDays()</code> and
+ *               <code>millis()</code> are allocation free.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class UDateRange implements Iterable<UDate> {
+
+	private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+			| Spliterator.IMMUTABLE | Spliterator.NONNULL;
+
+	// Most that n units can fall short of n times DateMath.minLength(): the ten days
+	// of the cutover, a month end clamped to February and two days of offset changes
+	private static final long SLACK = 16 * DateMath.MILLIS_PER_DAY;
+
+	private final long start;
+
+	private final TimeZone zone;
+
+	private final int field;
+
+	private final int step;
+
+	// Months since year 0 of the first month end, -1 unless a month-end range
+	private final long firstMonth;
+
+	private final int size;
+
+	private UDateRange(long start, TimeZone zone, int field, int step, long firstMonth, int size) {
+		this.start = start;
+		this.zone = zone;
+		this.field = field;
+		this.step = step;
+		this.firstMonth = firstMonth;
+		this.size = size;
+	}
+
+	/**
+	 * Get the range <code>from</code>, <code>from + step</code>, ... up to and including
+	 * <code>to</code>, in the time zone of <code>from</code>.
+	 * @param from    First date.
+	 * @param to    Last date allowed.
+	 * @param unit    One of the <code>UDate.UNIT_*</code> constants.
+	 * @param step    Number of units between two dates, greater than 0.
+	 * @return The range, empty if <code>to</code> is before <code>from</code>.  It ends
+	 * early if it would have more than <code>Integer.MAX_VALUE</code> dates, or if
+	 * <code>(size() - 1) * step</code> would exceed <code>Integer.MAX_VALUE</code>.
+	 */
+	public static UDateRange of(UDate from, UDate to, short unit, int step) {
+		int field = UDate.calendarField(unit);
+		if (field < 0) {
+			throw new IllegalArgumentException("Invalid unit: " + unit);
+		}
+		if (step <= 0) {
+			throw new IllegalArgumentException("Invalid step: " + step);
+		}
+		TimeZone zone = DateMath.intern(from.getTimeZone());
+		long first = from.getTimeInMillis();
+		long last = to.getTimeInMillis();
+		if (last < first) {
+			return new UDateRange(first, zone, field, step, -1, 0);
+		}
+		// largest n with element n - 1 <= last; elements never decrease.  n - 1 steps
+		// take at least (n - 1) * step * minLength - SLACK
+		long bound = Math.min(Integer.MAX_VALUE / step + 1L, Integer.MAX_VALUE);
+		long span = last - first;
+		if (span >= 0 && span / step < Long.MAX_VALUE - SLACK) {
+			bound = Math.min(bound, (span / step + SLACK) / DateMath.minLength(field) + 1);
+		}
+		int lo = 1;
+		int hi = (int) bound;
+		while (lo < hi) {
+			int mid = (int) (((long) lo + hi + 1) >>> 1);
+			if (notAfter(zone, first, field, (mid - 1) * step, last)) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return new UDateRange(first, zone, field, step, -1, lo);
+	}
+
+	/**
+	 * Check whether <code>first</code> adjusted by an amount is not after <code>last</code>;
+	 * an amount that takes it out of the range of instants is after.
+	 */
+	private static boolean notAfter(TimeZone zone, long first, int field, int amount, long last) {
+		try {
+			return DateMath.add(zone, first, field, amount) <= last;
+		} catch (ArithmeticException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Get every day from the date of <code>from</code> to the date of <code>to</code>,
+	 * both included, at midnight in the time zone of <code>from</code>.
+	 */
+	public static UDateRange days(UDate from, UDate to) {
+		TimeZone zone = DateMath.intern(from.getTimeZone());
+		long firstDay = DateMath.epochDay(DateMath.localMillis(zone, from.getTimeInMillis()));
+		long lastDay = DateMath.epochDay(DateMath.localMillis(zone, to.getTimeInMillis()));
+		int size = (int) Math.max(Math.min(lastDay - firstDay + 1, Integer.MAX_VALUE), 0);
+		return new UDateRange(DateMath.startOfDay(zone, firstDay), zone, UDate.calendarField(UDate.UNIT_DAYS), 1,
+				-1, size);
+	}
+
+	/**
+	 * Get the last day of every month whose last day falls between the date of
+	 * <code>from</code> and the date of <code>to</code>, both included, at midnight in
+	 * the time zone of <code>from</code>.
+	 */
+	public static UDateRange monthEnds(UDate from, UDate to) {
+		TimeZone zone = DateMath.intern(from.getTimeZone());
+		long first = DateMath.civil(DateMath.epochDay(DateMath.localMillis(zone, from.getTimeInMillis())));
+		long lastDay = DateMath.epochDay(DateMath.localMillis(zone, to.getTimeInMillis()));
+		long last = DateMath.civil(lastDay);
+		long firstMonth = DateMath.year(first) * 12L + DateMath.month(first) - 1;
+		long lastMonth = DateMath.year(last) * 12L + DateMath.month(last) - 1;
+		if (monthEnd(lastMonth) != lastDay) {
+			lastMonth--;
+		}
+		int size = (int) Math.max(Math.min(lastMonth - firstMonth + 1, Integer.MAX_VALUE), 0);
+		return new UDateRange(0, zone, -1, 0, firstMonth, size);
+	}
+
+	/**
+	 * Get the number of dates in the range.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get a date of the range.
+	 * @param index    0 - <code>size() - 1</code>
+	 * @return A new date, in the time zone of the range.
+	 */
+	public UDate get(int index) {
+		return new CompactUDate(getTimeInMillis(index), zone);
+	}
+
+	/**
+	 * Get a date of the range as milliseconds since January 1, 1970 00:00:00 GMT.
+	 * @param index    0 - <code>size() - 1</code>
+	 */
+	public long getTimeInMillis(int index) {
+		checkIndex(index);
+		if (firstMonth >= 0) {
+			return DateMath.startOfDay(zone, monthEnd(firstMonth + index));
+		}
+		return index == 0 ? start : DateMath.add(zone, start, field, index * step);
+	}
+
+	/**
+	 * Get a date of the range as the number of days since January 1, 1970, counted in
+	 * the time zone of the range.
+	 * @param index    0 - <code>size() - 1</code>
+	 */
+	public int getEpochDay(int index) {
+		checkIndex(index);
+		if (firstMonth >= 0) {
+			return (int) monthEnd(firstMonth + index);
+		}
+		return (int) DateMath.epochDay(DateMath.localMillis(zone, getTimeInMillis(index)));
+	}
+
+	/**
+	 * Get the dates as a sequential stream of new <code>UDate</code> objects; call
+	 * <code>parallel()</code> on it to process them on the fork-join pool.
+	 */
+	public Stream<UDate> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Get the dates as a sequential stream of epoch days, without creating any object
+	 * per element.
+	 */
+	public IntStream epochDays() {
+		return IntStream.range(0, size).map(this::getEpochDay);
+	}
+
+	/**
+	 * Get the dates as a sequential stream of milliseconds since January 1, 1970
+	 * 00:00:00 GMT, without creating any object per element.
+	 */
+	public LongStream millis() {
+		return IntStream.range(0, size).mapToLong(this::getTimeInMillis);
+	}
+
+	public Iterator<UDate> iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+
+	public Spliterator<UDate> spliterator() {
+		return new RangeSpliterator(0, size);
+	}
+
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+	}
+
+	/**
+	 * Epoch day of the last day of a month.
+	 * @param month    Months since January of year 0.
+	 */
+	private static long monthEnd(long month) {
+		long next = month + 1;
+		return DateMath.toEpochDay(Math.floorDiv(next, 12), (int) Math.floorMod(next, 12L) + 1, 1) - 1;
+	}
+
+	/**
+	 * Covers the indexes <code>[index, end)</code>; splits in half.
+	 */
+	private final class RangeSpliterator implements Spliterator<UDate> {
+		private int index;
+		private final int end;
+
+		RangeSpliterator(int index, int end) {
+			this.index = index;
+			this.end = end;
+		}
+
+		public boolean tryAdvance(Consumer<? super UDate> action) {
+			if (index >= end) {
+				return false;
+			}
+			action.accept(get(index++));
+			return true;
+		}
+
+		public void forEachRemaining(Consumer<? super UDate> action) {
+			for (; index < end; index++) {
+				action.accept(get(index));
+			}
+		}
+
+		public Spliterator<UDate> trySplit() {
+			int mid = (index + end) >>> 1;
+			if (mid <= index) {
+				return null;
+			}
+			Spliterator<UDate> prefix = new RangeSpliterator(index, mid);
+			index = mid;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return end - index;
+		}
+
+		public int characteristics() {
+			return CHARACTERISTICS;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package util;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.TimeZone;
+
+/**
+ * Title:        Date sequence.
+ * Description:  Iterates over the dates <code>start</code>, <code>start + step</code>,
+ *               <code>start + 2 * step</code>, ... in one of the <code>UDate.UNIT_*</code>
+ *               units, as milliseconds since January 1, 1970 00:00:00 GMT, without
+ *               creating any object per step.
+ *
+ *               Element <code>i</code> is the start adjusted once by
+ *               <code>i * step</code>, as <code>UDate.adjust()</code> would do it, not the
+ *               previous element adjusted by <code>step</code>: stepping by months from
+ *               January 31 gives February 28, March 31, April 30, ... instead of
+ *               sticking to the 28th.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class UDateSequence implements PrimitiveIterator.OfLong {
+
+	private final long start;
+
+	private final TimeZone zone;
+
+	private final int field;
+
+	private final int step;
+
+	private final int count;
+
+	private int index;
+
+	/**
+	 * Construct a sequence in the time zone of the start date.
+	 * @param start    First date of the sequence.
+	 * @param unit    One of the <code>UDate.UNIT_*</code> constants; other values give
+	 * <code>count</code> times the start date, as <code>adjust()</code> ignores them.
+	 * @param step    Number of units between two dates.  Can be negative or positive.
+	 * @param count    Number of dates.
+	 */
+	public UDateSequence(UDate start, short unit, int step, int count) {
+		this(start.getTimeInMillis(), start.getTimeZone(), unit, step, count);
+	}
+
+	/**
+	 * Construct a sequence.
+	 * @param start    First date, as milliseconds since January 1, 1970 00:00:00 GMT
+	 * @param zone    Time zone the dates are adjusted in.
+	 * @param unit    One of the <code>UDate.UNIT_*</code> constants.
+	 * @param step    Number of units between two dates.
+	 * @param count    Number of dates.
+	 */
+	public UDateSequence(long start, TimeZone zone, short unit, int step, int count) {
+		if (count < 0) {
+			throw new IllegalArgumentException("Invalid count: " + count);
+		}
+		long last = (long) step * Math.max(count - 1, 0);
+		if (last != (int) last) {
+			throw new IllegalArgumentException("Sequence too long: " + count + " steps of " + step);
+		}
+		this.start = start;
+		this.zone = DateMath.intern(zone);
+		this.field = UDate.calendarField(unit);
+		this.step = step;
+		this.count = count;
+	}
+
+	/**
+	 * Get the number of dates in the sequence.
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Get a date of the sequence.
+	 * @param index    0 - <code>getCount() - 1</code>
+	 * @return Milliseconds since January 1, 1970 00:00:00 GMT
+	 */
+	public long get(int index) {
+		if (index < 0 || index >= count) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", count: " + count);
+		}
+		if (field < 0 || index == 0) {
+			return start;
+		}
+		return DateMath.add(zone, start, field, index * step);
+	}
+
+	public boolean hasNext() {
+		return index < count;
+	}
+
+	public long nextLong() {
+		if (index >= count) {
+			throw new NoSuchElementException();
+		}
+		return get(index++);
+	}
+
+	/**
+	 * Write the remaining dates into an array.
+	 * @param out    Receives the dates.
+	 * @param off    First position to write to.
+	 * @return Number of dates written, at most <code>out.length - off</code>.
+	 */
+	public int fill(long[] out, int off) {
+		int n = Math.min(count - index, out.length - off);
+		for (int i = 0; i < n; i++) {
+			out[off + i] = get(index++);
+		}
+		return n;
+	}
+
+	/**
+	 * Start again from the first date.
+	 */
+	public void reset() {
+		index = 0;
+	}
+}
@@ -0,0 +1,239 @@
+package util;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Title:        Immutable Universal Date value.
+ * Description:  The value-type counterpart of <code>UDate</code>: an instant (milliseconds
+ *               since January 1, 1970 00:00:00 GMT) and a shared time zone, neither of
+ *               which ever changes.  <code>adjust()</code> returns a new value instead of
+ *               changing this one, so instances can be shared between threads, used as
+ *               map keys and cached without any locking or copying.
+ *
+ *               Getters behave as the <code>UDate</code> methods of the same name.
+ *               Formatting does not: <code>UDate.getDate()</code> writes the fields of
+ *               the default time zone at the time of the call, a value always those of
+ *               its own time zone, so the text of a value never changes.  The date
+ *               fields are computed on first use and remembered in a volatile field.
+ *
+ *               Two values are equal if they denote the same instant in the same time
+ *               zone; values are ordered by instant, then by time zone ID.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class UDateValue implements Comparable<UDateValue>, java.io.Serializable {
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private final long millis;
+
+	private final String zoneId;
+
+	private final transient TimeZone zone;
+
+	// Remembered civil date, see DateMath; 0 until computed.  Volatile, as a long
+	// may otherwise be seen half written
+	private transient volatile long date;
+
+	private UDateValue(long millis, TimeZone zone) {
+		this.millis = millis;
+		this.zone = zone;
+		this.zoneId = zone.getID();
+	}
+
+	/**
+	 * Get the value for the current date and time, in the default time zone.
+	 */
+	public static UDateValue now() {
+		return of(System.currentTimeMillis());
+	}
+
+	/**
+	 * Get the value for an instant, in the default time zone.
+	 * @param longValue Number of milliseconds since January 1, 1970 00:00:00 GMT
+	 */
+	public static UDateValue of(long longValue) {
+		return new UDateValue(longValue, DateMath.defaultZone());
+	}
+
+	/**
+	 * Get the value for an instant.
+	 * @param longValue Number of milliseconds since January 1, 1970 00:00:00 GMT
+	 * @param zone    Time zone the date and time fields are computed in.
+	 */
+	public static UDateValue of(long longValue, TimeZone zone) {
+		return new UDateValue(longValue, DateMath.intern(zone));
+	}
+
+	/**
+	 * Get the value of a UDate object.
+	 * @param date  A UDate object
+	 * @return The value of the date in its time zone, <code>null</code> if date is null.
+	 */
+	public static UDateValue valueOf(UDate date) {
+		if (date == null) {
+			return null;
+		}
+		return of(date.getTimeInMillis(), date.getTimeZone());
+	}
+
+	/**
+	 * Get a new, independent UDate object with this value.
+	 */
+	public UDate toUDate() {
+		GregorianCalendar newCal = new GregorianCalendar(zone);
+		newCal.setTimeInMillis(millis);
+		return new UDate(newCal);
+	}
+
+	/**
+	 * Get the number of milliseconds since January 1, 1970 00:00:00 GMT.
+	 */
+	public long getTimeInMillis() { return millis; }
+
+	/**
+	 * Get the time zone the date and time fields are computed in.
+	 * @return A copy of the time zone.
+	 */
+	public TimeZone getTimeZone() { return (TimeZone) zone.clone(); }
+
+	/**
+	 * Get the shared time zone instance, which must not be modified.
+	 */
+	TimeZone zone() { return zone; }
+
+	/** @see UDate#getMonth() */
+	public int getMonth() { return DateMath.month(date()); }
+
+	/** @see UDate#getDay() */
+	public int getDay() { return DateMath.day(date()); }
+
+	/** @see UDate#getYear() */
+	public int getYear() { return DateMath.yearOfEra(DateMath.year(date())); }
+
+	/** @see UDate#getHour() */
+	public int getHour() { return hourOfDay() % 12; }
+
+	/** @see UDate#getMinute() */
+	public int getMinute() { return (timeOfDay() / (int) DateMath.MILLIS_PER_MINUTE) % 60; }
+
+	/** @see UDate#getSecond() */
+	public int getSecond() { return (timeOfDay() / (int) DateMath.MILLIS_PER_SECOND) % 60; }
+
+	/** @see UDate#getMillisecond() */
+	public int getMillisecond() { return timeOfDay() % 1000; }
+
+	/** @see UDate#getDateAsTimestamp() */
+	public Timestamp getDateAsTimestamp() {
+		return new Timestamp(millis);
+	}
+
+	/** @see UDate#getDateAsDate() */
+	public java.sql.Date getDateAsDate() {
+		return new java.sql.Date(millis);
+	}
+
+	/**
+	 * Get the date in the default format (yyyy-MM-dd HH:mm:ss).
+	 */
+	public String getDate() {
+		return getDate(UDate.TIMESTAMP);
+	}
+
+	/**
+	 * Get the date in the specified format, in the time zone of this value.  Unlike
+	 * <code>UDate.getDate(String)</code>, the default time zone plays no part.
+	 * @param format    Date format (e.g. MM/dd/yyyy)
+	 */
+	public String getDate(String format) {
+		int layout = FixedDateFormat.layoutOf(format);
+		long civil = date();
+		int year = DateMath.year(civil);
+		if (layout != FixedDateFormat.NONE && FixedDateFormat.supportsYear(year)) {
+			int time = timeOfDay();
+			char[] buf = new char[FixedDateFormat.length(layout)];
+			FixedDateFormat.format(layout, year, DateMath.month(civil), DateMath.day(civil),
+					time / (int) DateMath.MILLIS_PER_HOUR, (time / (int) DateMath.MILLIS_PER_MINUTE) % 60,
+					(time / (int) DateMath.MILLIS_PER_SECOND) % 60, buf, 0);
+			return new String(buf);
+		}
+		return DateFormatCache.format(format, new Date(millis), zone);
+	}
+
+	/**
+	 * Get the time in the default format (HH:mm:ss).
+	 */
+	public String getTime() {
+		return getDate(UDate.TIME);
+	}
+
+	/**
+	 * Get a value adjusted by the specified increment.  See <code>UDate.adjust()</code>.
+	 * @param unit    One of the <code>UDate.UNIT_*</code> constants; other values are ignored.
+	 * @param amount    Number of units to adjust by.  Can be negative or positive.
+	 * @return The adjusted value, this value if nothing changes.
+	 */
+	public UDateValue adjust(short unit, int amount) {
+		int field = UDate.calendarField(unit);
+		if (field < 0 || amount == 0) {
+			return this;
+		}
+		return new UDateValue(DateMath.add(zone, millis, field, amount), zone);
+	}
+
+	/**
+	 * Get the date in the default format (yyyy-MM-dd HH:mm:ss).
+	 */
+	public String toString() {
+		return getDate();
+	}
+
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof UDateValue)) {
+			return false;
+		}
+		UDateValue other = (UDateValue) obj;
+		return millis == other.millis && (zone == other.zone || zoneId.equals(other.zoneId));
+	}
+
+	public int hashCode() {
+		return (int) (millis ^ (millis >>> 32));
+	}
+
+	public int compareTo(UDateValue other) {
+		if (millis != other.millis) {
+			return millis < other.millis ? -1 : 1;
+		}
+		return zone == other.zone ? 0 : zoneId.compareTo(other.zoneId);
+	}
+
+	private long date() {
+		long civil = date;
+		if (civil == 0) {
+			civil = DateMath.civil(DateMath.epochDay(DateMath.localMillis(zone, millis)));
+			date = civil;
+		}
+		return civil;
+	}
+
+	private int timeOfDay() {
+		return DateMath.millisOfDay(DateMath.localMillis(zone, millis));
+	}
+
+	private int hourOfDay() {
+		return timeOfDay() / (int) DateMath.MILLIS_PER_HOUR;
+	}
+
+	private Object readResolve() {
+		return new UDateValue(millis, DateMath.intern(TimeZone.getTimeZone(zoneId)));
+	}
+}
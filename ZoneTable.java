@@ -0,0 +1,239 @@
+package util;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Title:        Time zone offset table.
+ * Description:  The offset changes of one time zone between January 1 of
+ *               <code>FIRST_YEAR</code> and December 31 of <code>LAST_YEAR</code> (GMT),
+ *               as a sorted array of transition instants and the offset in force after
+ *               each one, so that <code>DateMath.offset()</code> finds the offset of an
+ *               instant with an index and, at most, a step or two instead of a call into
+ *               <code>TimeZone</code>.  Instants outside the range are left to the zone.
+ *
+ *               The index is a slice of 2^32 ms (about 50 days) per entry, holding the
+ *               number of transitions before the start of the slice; a zone with a
+ *               summer time changes at most once per slice.
+ *
+ *               A table is built from the zone itself: its offset is read at every day
+ *               of the range, and at every transition <code>java.time</code> knows for
+ *               the zone ID, and every change is narrowed to the exact millisecond by
+ *               bisection, so the table gives the offsets of <code>getOffset(long)</code>,
+ *               DST boundaries included.  The transitions catch offset changes that undo
+ *               themselves within one day (there is one in Asia/Gaza in 2037); others are
+ *               not seen.  Building takes a few milliseconds and happens once
+ *               per zone, the first time it is used.  Tables belong to the interned zones
+ *               (see <code>DateMath.intern()</code>), which are never modified, and serve
+ *               every zone with the same ID and rules.
+ *
+ *               The range defaults to 1900 - 2100 and is set with the system properties
+ *               <code>util.ZoneTable.firstYear</code> and <code>util.ZoneTable.lastYear</code>.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+final class ZoneTable {
+
+	static final int FIRST_YEAR;
+
+	static final int LAST_YEAR;
+
+	private static final int SLICE_SHIFT = 32;
+
+	private static final long START;
+
+	private static final long END;
+
+	private static final ConcurrentHashMap<String, ZoneTable> tables = new ConcurrentHashMap<String, ZoneTable>();
+
+	// Table of the zone used last, checked by identity
+	private static volatile ZoneTable last;
+
+	static {
+		int first = Integer.getInteger("util.ZoneTable.firstYear", 1900).intValue();
+		int lastYear = Integer.getInteger("util.ZoneTable.lastYear", 2100).intValue();
+		if (lastYear < first || lastYear - first >= 10000) {
+			first = 1900;
+			lastYear = 2100;
+		}
+		FIRST_YEAR = first;
+		LAST_YEAR = lastYear;
+		START = DateMath.toEpochDay(first, 1, 1) * DateMath.MILLIS_PER_DAY;
+		END = DateMath.toEpochDay(lastYear + 1, 1, 1) * DateMath.MILLIS_PER_DAY;
+	}
+
+	private final TimeZone zone;
+
+	// transitions[i] is the first instant of offsets[i + 1]
+	private final long[] transitions;
+
+	private final int[] offsets;
+
+	// Number of transitions before the start of each slice
+	private final int[] slices;
+
+	private ZoneTable(TimeZone zone) {
+		this.zone = zone;
+		long[] found = new long[16];
+		int[] after = new int[17];
+		int count = 0;
+		after[0] = zone.getOffset(START);
+		long[] probes = probes(zone.getID());
+		int probe = 0;
+		// the offset at from is always after[count]
+		long from = START;
+		while (from < END - 1) {
+			long to = Math.min(from + DateMath.MILLIS_PER_DAY, END - 1);
+			while (probe < probes.length && probes[probe] <= from) {
+				probe++;
+			}
+			if (probe < probes.length) {
+				to = Math.min(to, probes[probe]);
+			}
+			int offset = after[count];
+			if (zone.getOffset(to) != offset) {
+				// first instant of the new offset in (from, to]
+				long lo = from;
+				long hi = to;
+				while (hi - lo > 1) {
+					long mid = lo + (hi - lo) / 2;
+					if (zone.getOffset(mid) == offset) {
+						lo = mid;
+					} else {
+						hi = mid;
+					}
+				}
+				if (count == found.length) {
+					found = Arrays.copyOf(found, count * 2);
+					after = Arrays.copyOf(after, count * 2 + 1);
+				}
+				found[count] = hi;
+				after[++count] = zone.getOffset(hi);
+				// look for a further change in the same day
+				from = hi;
+			} else {
+				from = to;
+			}
+		}
+		transitions = Arrays.copyOf(found, count);
+		offsets = Arrays.copyOf(after, count + 1);
+		slices = new int[(int) ((END - START - 1) >>> SLICE_SHIFT) + 1];
+		int next = 0;
+		for (int i = 0; i < slices.length; i++) {
+			long sliceStart = START + ((long) i << SLICE_SHIFT);
+			while (next < count && transitions[next] <= sliceStart) {
+				next++;
+			}
+			slices[i] = next;
+		}
+	}
+
+	/**
+	 * Get the transitions of the range in the <code>java.time</code> rules of a zone ID,
+	 * where the offset is read besides the days; none if there are no such rules.
+	 */
+	private static long[] probes(String id) {
+		ZoneRules rules;
+		try {
+			rules = ZoneId.of(id, ZoneId.SHORT_IDS).getRules();
+		} catch (DateTimeException e) {
+			return new long[0];
+		}
+		long[] probes = new long[16];
+		int count = 0;
+		ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(START));
+		while (transition != null && transition.toEpochSecond() < END / 1000) {
+			if (count == probes.length) {
+				probes = Arrays.copyOf(probes, count * 2);
+			}
+			probes[count++] = transition.toEpochSecond() * 1000;
+			transition = rules.nextTransition(transition.getInstant());
+		}
+		return Arrays.copyOf(probes, count);
+	}
+
+	/**
+	 * Get the table of a zone: the one of its interned instance, if the zone has the
+	 * same rules.
+	 * @return The table, <code>null</code> if the zone has other rules than the interned
+	 * instance of its ID.
+	 */
+	static ZoneTable get(TimeZone zone) {
+		ZoneTable table = last;
+		if (table != null && table.zone == zone) {
+			return table;
+		}
+		TimeZone shared = DateMath.intern(zone);
+		table = tables.get(shared.getID());
+		if (table == null || table.zone != shared) {
+			if (DateMath.intern(shared) != shared) {
+				// same ID, other rules: not interned
+				return null;
+			}
+			table = new ZoneTable(shared);
+			tables.put(shared.getID(), table);
+		}
+		if (shared == zone) {
+			last = table;
+		}
+		return table;
+	}
+
+	/**
+	 * Get the offset from GMT, DST included, at the specified instant, as
+	 * <code>TimeZone.getOffset(long)</code>.
+	 */
+	int offset(long millis) {
+		if (millis < START || millis >= END) {
+			return zone.getOffset(millis);
+		}
+		return offsets[next(millis)];
+	}
+
+	/**
+	 * Get the first instant of the run of instants around <code>millis</code> that have
+	 * its offset, as far as the range goes; <code>millis</code> itself outside the range.
+	 */
+	long runStart(long millis) {
+		if (millis < START || millis >= END) {
+			return millis;
+		}
+		int i = next(millis);
+		return i == 0 ? START : transitions[i - 1];
+	}
+
+	/**
+	 * Get the end, excluded, of the run of instants around <code>millis</code> that have
+	 * its offset, as far as the range goes; <code>millis + 1</code> outside the range.
+	 */
+	long runEnd(long millis) {
+		if (millis < START || millis >= END) {
+			return millis + 1;
+		}
+		int i = next(millis);
+		return i == transitions.length ? END : transitions[i];
+	}
+
+	/**
+	 * Index of the first transition after an instant of the range.
+	 */
+	private int next(long millis) {
+		int i = slices[(int) ((millis - START) >>> SLICE_SHIFT)];
+		while (i < transitions.length && transitions[i] <= millis) {
+			i++;
+		}
+		return i;
+	}
+
+	/** Get the number of offset changes in the range. */
+	int size() {
+		return transitions.length;
+	}
+}
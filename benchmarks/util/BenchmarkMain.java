@@ -0,0 +1,39 @@
+package util;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Title:        Benchmark launcher.
+ * Description:  Runs the benchmarks under <code>benchmarks/</code> with the GC profiler
+ *               always on, so that every result carries its allocation rate.  The
+ *               usual JMH command line options are accepted and take precedence; with
+ *               no arguments every benchmark of this package is run.
+ *
+ *               The benchmarks are the <code>jmh</code> module of the build, which
+ *               compiles them against this tree, <code>jmh-core</code> and
+ *               <code>jmh-generator-annprocess</code>; its <code>jmh</code> task runs
+ *               this class, e.g.
+ *
+ *               ./gradlew :jmh:jmh -Pjmh="UDateBenchmark -f 1"
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public final class BenchmarkMain {
+
+	private BenchmarkMain() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions options = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		builder.parent(options).addProfiler(GCProfiler.class).shouldFailOnError(true);
+		if (args.length == 0) {
+			builder.include("util\\..*Benchmark");
+		}
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,130 @@
+package util;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title:        UDate API benchmark.
+ * Description:  Throughput of the public <code>UDate</code> surface: construction,
+ *               formatting, <code>adjust()</code> for every <code>UNIT_*</code>
+ *               constant, <code>formatta</code> for every length branch and
+ *               <code>ctrlData</code> on valid and invalid input.  Run through
+ *               <code>BenchmarkMain</code> to get the allocation rate
+ *               (<code>gc.alloc.rate.norm</code>) next to every score.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UDateBenchmark {
+
+	private UDate date;
+
+	private long millis;
+
+	@Setup
+	public void setup() {
+		millis = 1262349045000L;
+		date = UDate.newInstance(millis);
+	}
+
+	@Benchmark
+	public UDate newInstanceString() throws ParseException {
+		return UDate.newInstance("31/12/2009");
+	}
+
+	@Benchmark
+	public UDate newInstanceLong() {
+		return UDate.newInstance(millis);
+	}
+
+	@Benchmark
+	public String getDate() {
+		return date.getDate();
+	}
+
+	@Benchmark
+	public String getDatePattern() {
+		return date.getDate("dd MMM yyyy");
+	}
+
+	@Benchmark
+	public String getDateForDB() {
+		return date.getDateForDB();
+	}
+
+	@Benchmark
+	public UDate adjust(AdjustState state) {
+		// back and forth, so that the date stays in range
+		state.amount = -state.amount;
+		state.date.adjust(state.unit, state.amount);
+		return state.date;
+	}
+
+	@Benchmark
+	public String formatta(FormattaState state) {
+		return UDate.formatta(state.input);
+	}
+
+	@Benchmark
+	public Date ctrlDataValid() throws ParseException {
+		return UDate.ctrlData("31/12/2009");
+	}
+
+	@Benchmark
+	public Object ctrlDataInvalid() {
+		try {
+			return UDate.ctrlData("31/02/2009");
+		} catch (ParseException e) {
+			return e;
+		}
+	}
+
+	/**
+	 * One date per <code>UNIT_*</code> constant, adjusted in place.
+	 */
+	@State(Scope.Thread)
+	public static class AdjustState {
+
+		@Param({ "1", "2", "3", "4", "5", "6", "7" })
+		public short unit;
+
+		UDate date;
+
+		int amount = 1;
+
+		@Setup
+		public void setup() {
+			date = UDate.newInstance(1262349045000L);
+		}
+	}
+
+	/**
+	 * One input per <code>formatta</code> branch.
+	 */
+	@State(Scope.Thread)
+	public static class FormattaState {
+
+		@Param({ "", "1.2.09", "010209", "1.12.09", "31.1.09", "1.2.2009", "31.12.09", "31122009",
+				"1.12.2009", "31.1.2009", "2009-12-31", "31.12.2009", "2009-12-31 10:30:45" })
+		public String input;
+	}
+}
@@ -0,0 +1,73 @@
+package util;
+
+import java.util.GregorianCalendar;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title:        UDate copy benchmark.
+ * Description:  Cost of <code>UDate.newInstance(UDate)</code> against the defensive
+ *               round trip it replaces (<code>new UDate()</code> plus a fresh calendar)
+ *               and against a bare <code>new GregorianCalendar()</code>.  The
+ *               <code>copyThenAdjust</code> case shows what a copy costs once it is
+ *               actually changed and has to take its own calendar.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UDateCopyBenchmark {
+
+	private UDate date;
+	private CompactUDate compact;
+
+	@Setup
+	public void setup() {
+		date = UDate.newInstance(1262304000000L);
+		compact = new CompactUDate(1262304000000L);
+	}
+
+	@Benchmark
+	public GregorianCalendar newGregorianCalendar() {
+		return new GregorianCalendar();
+	}
+
+	@Benchmark
+	public UDate defensiveCopy() {
+		UDate copy = new UDate();
+		copy.cal.setTimeInMillis(date.getTimeInMillis());
+		return copy;
+	}
+
+	@Benchmark
+	public UDate copy() {
+		return UDate.newInstance(date);
+	}
+
+	@Benchmark
+	public UDate copyThenAdjust() {
+		UDate copy = UDate.newInstance(date);
+		copy.adjust(UDate.UNIT_DAYS, 1);
+		return copy;
+	}
+
+	@Benchmark
+	public UDate copyCompact() {
+		return UDate.newInstance(compact);
+	}
+}
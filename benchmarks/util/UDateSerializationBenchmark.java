@@ -0,0 +1,93 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Title:        UDate serialization benchmark.
+ * Description:  Cost of writing and reading a <code>UDate</code> in the compact form
+ *               (milliseconds, week settings and a time zone ID reference) against the
+ *               calendar form used before it.  The calendar form is produced by a date
+ *               whose calendar is not lenient, which <code>UDate</code> still writes whole;
+ *               leniency does not change the cost of the calendar graph.  The size of
+ *               each form is printed once per fork.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UDateSerializationBenchmark {
+
+	private UDate compact;
+	private UDate calendar;
+
+	private byte[] compactBytes;
+	private byte[] calendarBytes;
+
+	@Setup
+	public void setup() throws IOException {
+		compact = UDate.newInstance(1262304000000L);
+		calendar = UDate.newInstance(1262304000000L);
+		calendar.cal.setLenient(false);
+		compactBytes = write(compact);
+		calendarBytes = write(calendar);
+		System.out.println("bytes: compact=" + compactBytes.length + " calendar=" + calendarBytes.length);
+	}
+
+	@Benchmark
+	public byte[] writeCompact() throws IOException {
+		return write(compact);
+	}
+
+	@Benchmark
+	public byte[] writeCalendar() throws IOException {
+		return write(calendar);
+	}
+
+	@Benchmark
+	public Object readCompact() throws IOException, ClassNotFoundException {
+		return read(compactBytes);
+	}
+
+	@Benchmark
+	public Object readCalendar() throws IOException, ClassNotFoundException {
+		return read(calendarBytes);
+	}
+
+	private static byte[] write(Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(value);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static Object read(byte[] bytes) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		try {
+			return in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,241 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Title:        BusinessCalendar test.
+ * Description:  Working days, counts, additions and next working days of a calendar
+ *               against a day-by-day walk over the same rules: weekends, yearly holidays,
+ *               Easter Monday, single holidays and working days, the days at both ends
+ *               of the range and a calendar with no working day.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class BusinessCalendarTest {
+
+	private static final int FIRST_YEAR = 2019;
+
+	private static final int LAST_YEAR = 2026;
+
+	// Easter Sunday, year, month, day
+	private static final int[][] EASTER = { { 1900, 4, 15 }, { 2000, 4, 23 }, { 2008, 3, 23 }, { 2011, 4, 24 },
+			{ 2019, 4, 21 }, { 2020, 4, 12 }, { 2021, 4, 4 }, { 2022, 4, 17 }, { 2023, 4, 9 }, { 2024, 3, 31 },
+			{ 2025, 4, 20 }, { 2026, 4, 5 }, { 2038, 4, 25 }, { 2100, 3, 28 } };
+
+	private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+
+	@Test
+	public void easter() {
+		BusinessCalendar italy = BusinessCalendar.italy();
+		for (int[] easter : EASTER) {
+			long sunday = day(easter[0], easter[1], easter[2]);
+			assertEquals(sunday, BusinessCalendar.easter(easter[0]));
+			assertFalse(italy.isWorkingDay(sunday + 1));
+		}
+	}
+
+	@Test
+	public void againstDayByDay() {
+		// a working Saturday, a working national holiday and a working Easter Monday;
+		// single holidays on a Monday and on the first and last day of the range
+		BusinessCalendar.Builder builder = BusinessCalendar.builder().years(FIRST_YEAR, LAST_YEAR)
+				.weekend(Calendar.SATURDAY, Calendar.SUNDAY).holiday(1, 1).holiday(4, 25).holiday(12, 25)
+				.holiday(2, 29).easterMonday();
+		long[] working = { day(2020, 6, 6), day(2021, 4, 25), day(2024, 4, 1) };
+		long[] off = { day(2022, 3, 14), day(2019, 1, 2), day(2026, 12, 31) };
+		for (long day : working) {
+			builder.workingDay(date(day, 13));
+		}
+		for (long day : off) {
+			builder.holiday(date(day, 9));
+		}
+		BusinessCalendar calendar = builder.build();
+		boolean[] model = model(working, off);
+		long first = day(FIRST_YEAR, 1, 1);
+		long end = day(LAST_YEAR + 1, 1, 1);
+		for (long day = first; day < end; day++) {
+			assertEquals("day " + day, model[(int) (day - first)], calendar.isWorkingDay(day));
+		}
+		Random random = new Random(24);
+		for (int n = 0; n < 20000; n++) {
+			long from = first + random.nextInt(model.length + 1);
+			long to = first + random.nextInt(model.length + 1);
+			if (n < 4) {
+				// the ends of the range
+				from = (n & 1) == 0 ? first : end;
+				to = (n & 2) == 0 ? first : end;
+			}
+			assertEquals(from + " - " + to, count(model, first, from, to), calendar.workingDaysBetween(from, to));
+			if (from == end) {
+				continue;
+			}
+			int workingDays = random.nextInt(401) - 200;
+			long expected = add(model, first, from, workingDays);
+			try {
+				assertEquals(from + " + " + workingDays, expected, calendar.addWorkingDays(from, workingDays));
+			} catch (IllegalArgumentException e) {
+				assertEquals(from + " + " + workingDays, Long.MIN_VALUE, expected);
+			}
+			long next = add(model, first, from - 1, 1);
+			try {
+				assertEquals("next " + from, next, calendar.nextWorkingDay(from));
+			} catch (IllegalArgumentException e) {
+				assertEquals("next " + from, Long.MIN_VALUE, next);
+			}
+		}
+	}
+
+	@Test
+	public void rangeEnds() {
+		BusinessCalendar calendar = BusinessCalendar.builder().years(FIRST_YEAR, LAST_YEAR)
+				.weekend(Calendar.SATURDAY, Calendar.SUNDAY).build();
+		long first = day(FIRST_YEAR, 1, 1);
+		long last = day(LAST_YEAR, 12, 31);
+		// January 1, 2019 is a Tuesday, December 31, 2026 a Thursday
+		assertEquals(first, calendar.nextWorkingDay(first));
+		assertEquals(last, calendar.addWorkingDays(last - 1, 1));
+		assertEquals(first, calendar.addWorkingDays(first + 1, -1));
+		assertEquals(1, calendar.workingDaysBetween(last, last + 1));
+		outside(calendar, first - 1);
+		outside(calendar, last + 1);
+		try {
+			calendar.addWorkingDays(last, 1);
+			fail("Added past the range");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			calendar.addWorkingDays(first, -1);
+			fail("Went back before the range");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void noWorkingDay() {
+		BusinessCalendar calendar = BusinessCalendar.builder().years(2020, 2020)
+				.weekend(Calendar.SUNDAY, Calendar.MONDAY, Calendar.TUESDAY, Calendar.WEDNESDAY, Calendar.THURSDAY,
+						Calendar.FRIDAY, Calendar.SATURDAY)
+				.build();
+		long first = day(2020, 1, 1);
+		assertEquals(0, calendar.workingDaysBetween(first, day(2021, 1, 1)));
+		assertEquals(first, calendar.addWorkingDays(first, 0));
+		try {
+			calendar.nextWorkingDay(first);
+			fail("Found a working day");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			calendar.addWorkingDays(first, 1);
+			fail("Found a working day");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void datesKeepTheirTime() {
+		TimeZone rome = TimeZone.getTimeZone("Europe/Rome");
+		BusinessCalendar italy = BusinessCalendar.italy();
+		// Friday, March 27, 2020, 18:30 in Rome; summer time starts on Sunday
+		GregorianCalendar cal = new GregorianCalendar(rome);
+		cal.clear();
+		cal.set(2020, Calendar.MARCH, 27, 18, 30);
+		UDate friday = new CompactUDate(cal.getTimeInMillis(), rome);
+		UDate monday = italy.addWorkingDays(friday, 1);
+		assertEquals(30, monday.getDay());
+		assertEquals(6, monday.getHour());
+		assertEquals(30, monday.getMinute());
+		assertEquals(1, italy.workingDaysBetween(friday, monday));
+		cal.set(2020, Calendar.MARCH, 28, 18, 30);
+		assertEquals(monday.getTimeInMillis(), italy.nextWorkingDay(new CompactUDate(cal.getTimeInMillis(), rome))
+				.getTimeInMillis());
+	}
+
+	private static void outside(BusinessCalendar calendar, long day) {
+		try {
+			calendar.isWorkingDay(day);
+			fail("Day " + day + " is in the range");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Working days of the range, from GregorianCalendar fields.
+	 */
+	private static boolean[] model(long[] working, long[] off) {
+		long first = day(FIRST_YEAR, 1, 1);
+		boolean[] model = new boolean[(int) (day(LAST_YEAR + 1, 1, 1) - first)];
+		GregorianCalendar cal = new GregorianCalendar(GMT);
+		for (int i = 0; i < model.length; i++) {
+			cal.setTimeInMillis((first + i) * DateMath.MILLIS_PER_DAY);
+			int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+			int month = cal.get(Calendar.MONTH) + 1;
+			int day = cal.get(Calendar.DAY_OF_MONTH);
+			boolean holiday = dayOfWeek == Calendar.SATURDAY || dayOfWeek == Calendar.SUNDAY
+					|| (month == 1 && day == 1) || (month == 4 && day == 25) || (month == 12 && day == 25)
+					|| (month == 2 && day == 29);
+			for (int[] easter : EASTER) {
+				holiday |= first + i == day(easter[0], easter[1], easter[2]) + 1;
+			}
+			for (long d : off) {
+				holiday |= first + i == d;
+			}
+			model[i] = !holiday;
+			for (long d : working) {
+				model[i] |= first + i == d;
+			}
+		}
+		return model;
+	}
+
+	private static int count(boolean[] model, long first, long from, long to) {
+		int count = 0;
+		for (long day = Math.min(from, to); day < Math.max(from, to); day++) {
+			count += model[(int) (day - first)] ? 1 : 0;
+		}
+		return from <= to ? count : -count;
+	}
+
+	/**
+	 * Walk day by day; <code>Long.MIN_VALUE</code> if the walk leaves the range.
+	 */
+	private static long add(boolean[] model, long first, long from, int workingDays) {
+		long day = from;
+		int step = workingDays < 0 ? -1 : 1;
+		for (int left = Math.abs(workingDays); left > 0;) {
+			day += step;
+			if (day < first || day >= first + model.length) {
+				return Long.MIN_VALUE;
+			}
+			if (model[(int) (day - first)]) {
+				left--;
+			}
+		}
+		return day;
+	}
+
+	private static long day(int year, int month, int day) {
+		GregorianCalendar cal = new GregorianCalendar(GMT);
+		cal.clear();
+		cal.set(year, month - 1, day);
+		return Math.floorDiv(cal.getTimeInMillis(), DateMath.MILLIS_PER_DAY);
+	}
+
+	private static UDate date(long day, int hour) {
+		return new CompactUDate(day * DateMath.MILLIS_PER_DAY + hour * DateMath.MILLIS_PER_HOUR, GMT);
+	}
+}
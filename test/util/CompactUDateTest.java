@@ -0,0 +1,127 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Date;
+
+import org.junit.Test;
+
+/**
+ * Title:        CompactUDate test.
+ * Description:  Every public method of <code>UDate</code>, instance or static with a
+ *               <code>UDate</code> argument, gives the same result on a
+ *               <code>CompactUDate</code> as on a calendar-backed <code>UDate</code> set to
+ *               the same instant, and does not touch the missing calendar.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class CompactUDateTest {
+
+	// Winter and summer time, a month end and a date before 1970
+	private static final long[] INSTANTS = { 1268532245123L, 1277942399999L, 1296518400000L, -1234567890123L };
+
+	private static final String[] FORMATS = { UDate.TIMESTAMP, UDate.DATESTAMP, UDate.TIME, "dd/MM/yyyy",
+			"EEE d MMM yyyy hh:mm:ss.SSS a" };
+
+	private static final short[] UNITS = { UDate.UNIT_DAYS, UDate.UNIT_MONTHS, UDate.UNIT_YEARS, UDate.UNIT_HOURS,
+			UDate.UNIT_MINUTES, UDate.UNIT_SECONDS, UDate.UNIT_MILLISECONDS, 0 };
+
+	private static final int[] AMOUNTS = { 1, -1, 13, -400 };
+
+	@Test
+	public void everyPublicMethod() throws Exception {
+		int methods = 0;
+		for (Method method : UDate.class.getDeclaredMethods()) {
+			if (!Modifier.isPublic(method.getModifiers())) {
+				continue;
+			}
+			boolean isStatic = Modifier.isStatic(method.getModifiers());
+			if (isStatic && !takesUDate(method)) {
+				continue;
+			}
+			methods++;
+			for (long millis : INSTANTS) {
+				for (Object[] args : arguments(method, isStatic)) {
+					UDate expected = UDate.newInstance(new Date(millis));
+					UDate compact = new CompactUDate(millis);
+					if (isStatic) {
+						args[0] = expected;
+						Object expectedResult = invoke(method, null, args);
+						args[0] = compact;
+						check(method, millis, expectedResult, invoke(method, null, args));
+					} else {
+						check(method, millis, invoke(method, expected, args), invoke(method, compact, args));
+					}
+					assertEquals(method + " at " + millis, expected.getTimeInMillis(), compact.getTimeInMillis());
+				}
+			}
+		}
+		assertTrue(methods >= 25);
+	}
+
+	@Test
+	public void getDateForDB() {
+		for (long millis : INSTANTS) {
+			UDate expected = UDate.newInstance(new Date(millis));
+			UDate compact = new CompactUDate(millis);
+			assertEquals(expected.getDateForDB(), compact.getDateForDB());
+			assertEquals(expected.getDateForDB(UDate.DATESTAMP), compact.getDateForDB(UDate.DATESTAMP));
+			assertEquals(expected.getDate("dd MMMM yyyy"), compact.getDate("dd MMMM yyyy"));
+		}
+	}
+
+	private static boolean takesUDate(Method method) {
+		Class<?>[] types = method.getParameterTypes();
+		return types.length > 0 && types[0] == UDate.class;
+	}
+
+	private static Object[][] arguments(Method method, boolean isStatic) {
+		Class<?>[] types = method.getParameterTypes();
+		int from = isStatic ? 1 : 0;
+		if (types.length == from) {
+			return new Object[][] { new Object[types.length] };
+		}
+		if (types.length == from + 1 && types[from] == String.class) {
+			Object[][] args = new Object[FORMATS.length][];
+			for (int i = 0; i < FORMATS.length; i++) {
+				args[i] = new Object[types.length];
+				args[i][from] = FORMATS[i];
+			}
+			return args;
+		}
+		if (types.length == 2 && types[0] == Short.TYPE && types[1] == Integer.TYPE) {
+			Object[][] args = new Object[UNITS.length * AMOUNTS.length][];
+			int n = 0;
+			for (short unit : UNITS) {
+				for (int amount : AMOUNTS) {
+					args[n++] = new Object[] { Short.valueOf(unit), Integer.valueOf(amount) };
+				}
+			}
+			return args;
+		}
+		throw new AssertionError("No arguments for " + method);
+	}
+
+	private static Object invoke(Method method, Object target, Object[] args) throws Exception {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw new AssertionError(method + " failed", e.getCause());
+		}
+	}
+
+	private static void check(Method method, long millis, Object expected, Object actual) {
+		String what = method + " at " + millis;
+		if (expected instanceof UDate) {
+			assertEquals(what, ((UDate) expected).getTimeInMillis(), ((UDate) actual).getTimeInMillis());
+			assertEquals(what, expected.toString(), actual.toString());
+		} else {
+			assertEquals(what, expected, actual);
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Title:        DateBatchFormat test.
+ * Description:  Every row of a batch is the one of a <code>SimpleDateFormat</code> in the
+ *               same zone, whatever the order of the rows, on the days the offset changes
+ *               too.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class DateBatchFormatTest {
+
+	private static final String[] PATTERNS = { UDate.TIMESTAMP, UDate.DATESTAMP, UDate.TIME, "dd/MM/yyyy",
+			"yyyy-MM-dd HH:mm:ss.SSS" };
+
+	private static final String[] ZONES = { "Europe/Rome", "America/Sao_Paulo", "Australia/Lord_Howe", "GMT" };
+
+	@Test
+	public void descendingAcrossOffsetChanges() {
+		// Europe/Rome 2010: summer time from March 28, 02:00 to October 31, 03:00
+		check(descending(1269813600000L, 1269727200000L), "Europe/Rome");
+		check(descending(1288573200000L, 1288476000000L), "Europe/Rome");
+		for (String zone : ZONES) {
+			// every quarter of an hour of 2010, last to first
+			check(descending(1293840000000L, 1262304000000L), zone);
+		}
+	}
+
+	@Test
+	public void laterInstantFirst() {
+		// 03:30 CEST, then 01:30 CET of the same day
+		long[] millis = { 1269739800000L, 1269736200000L };
+		check(millis, "Europe/Rome");
+	}
+
+	@Test
+	public void shuffled() {
+		Random random = new Random(7);
+		long[] millis = descending(1293840000000L, 1262304000000L);
+		for (int i = millis.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			long m = millis[i];
+			millis[i] = millis[j] + random.nextInt(900000);
+			millis[j] = m;
+		}
+		for (String zone : ZONES) {
+			check(millis, zone);
+		}
+	}
+
+	private static long[] descending(long from, long to) {
+		long[] millis = new long[(int) ((from - to) / 900000) + 1];
+		for (int i = 0; i < millis.length; i++) {
+			millis[i] = from - i * 900000L;
+		}
+		return millis;
+	}
+
+	private static void check(long[] millis, String id) {
+		TimeZone zone = TimeZone.getTimeZone(id);
+		int[] offsets = new int[millis.length + 1];
+		for (String pattern : PATTERNS) {
+			SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+			sdf.setTimeZone(zone);
+			char[] chars = DateBatchFormat.format(millis, 0, millis.length, pattern, zone, offsets);
+			for (int i = 0; i < millis.length; i++) {
+				assertEquals(id + " " + pattern + " at " + millis[i], sdf.format(new Date(millis[i])),
+						new String(chars, offsets[i], offsets[i + 1] - offsets[i]));
+			}
+			byte[] bytes = DateBatchFormat.formatAscii(millis, 0, millis.length, pattern, zone, offsets);
+			for (int i = 0; i < millis.length; i++) {
+				assertEquals(id + " " + pattern + " at " + millis[i], sdf.format(new Date(millis[i])),
+						new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.US_ASCII));
+			}
+		}
+	}
+}
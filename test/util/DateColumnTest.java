@@ -0,0 +1,198 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Title:        DateColumn test.
+ * Description:  Writes columns of days and milliseconds and reads them back: values,
+ *               the time zone of the column, and block-indexed counts and scans against
+ *               a brute-force count.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class DateColumnTest {
+
+	private static final TimeZone ROME = TimeZone.getTimeZone("Europe/Rome");
+
+	private static final TimeZone TOKYO = TimeZone.getTimeZone("Asia/Tokyo");
+
+	// 2010-01-01 00:30 in Tokyo, still December 31 in Rome
+	private static final long TOKYO_NEW_YEAR = 1262273400000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TimeZone zone;
+
+	@Before
+	public void setZone() {
+		zone = TimeZone.getDefault();
+		TimeZone.setDefault(ROME);
+	}
+
+	@After
+	public void restoreZone() {
+		TimeZone.setDefault(zone);
+	}
+
+	@Test
+	public void daysRoundTripInColumnZone() throws IOException {
+		Path file = folder.newFile().toPath();
+		DateColumn.Writer writer = DateColumn.create(file, DateColumn.DAYS, 64, TOKYO);
+		writer.add(new CompactUDate(TOKYO_NEW_YEAR, TOKYO));
+		writer.add((UDate) null);
+		// a date of another zone is counted in the zone of the column
+		writer.add(new CompactUDate(TOKYO_NEW_YEAR, ROME));
+		writer.close();
+		TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+		DateColumn column = DateColumn.open(file);
+		assertEquals("Asia/Tokyo", column.getTimeZone().getID());
+		assertEquals(14610, column.getLong(0));
+		assertNull(column.get(1));
+		assertEquals(14610, column.getLong(2));
+		UDate read = column.get(0);
+		assertEquals(1262271600000L, read.getTimeInMillis());
+		assertEquals("Asia/Tokyo", read.getTimeZone().getID());
+		assertEquals(2, column.count(read, read));
+		column.close();
+	}
+
+	@Test
+	public void defaultZone() throws IOException {
+		Path file = folder.newFile().toPath();
+		DateColumn.Writer writer = DateColumn.create(file, DateColumn.DAYS);
+		writer.add(new CompactUDate(TOKYO_NEW_YEAR, TOKYO));
+		writer.close();
+		DateColumn column = DateColumn.open(file);
+		assertEquals("Europe/Rome", column.getTimeZone().getID());
+		assertEquals(14609, column.getLong(0));
+		column.close();
+	}
+
+	@Test
+	public void firstVersionReadsInDefaultZone() throws IOException {
+		Path file = folder.newFile().toPath();
+		DateColumn.Writer writer = DateColumn.create(file, DateColumn.DAYS, 64, TOKYO);
+		writer.add(14610);
+		writer.close();
+		// drop the zone: version 1, no ID length, no ID
+		RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+		try {
+			raf.seek(4);
+			raf.write(new byte[] { 1, 0, 0, 0 });
+			raf.seek(32);
+			raf.write(new byte[4]);
+			raf.setLength(raf.length() - "Asia/Tokyo".length());
+		} finally {
+			raf.close();
+		}
+		DateColumn column = DateColumn.open(file);
+		assertEquals("Europe/Rome", column.getTimeZone().getID());
+		assertEquals(1262300400000L, column.get(0).getTimeInMillis());
+		column.close();
+	}
+
+	@Test
+	public void zoneNotKnownByItsId() throws IOException {
+		Path file = folder.newFile().toPath();
+		TimeZone[] zones = { new SimpleTimeZone(3600000, "Custom"), new SimpleTimeZone(3600000, "Europe/Rome"),
+				TimeZone.getTimeZone("GMT+01:30") };
+		for (int i = 0; i < zones.length; i++) {
+			try {
+				DateColumn.create(file, DateColumn.DAYS, 64, zones[i]).close();
+				if (i < 2) {
+					fail("Created a column in " + zones[i].getID());
+				}
+			} catch (IllegalArgumentException e) {
+				assertTrue(i < 2);
+			}
+		}
+		// custom IDs that resolve, as GMT+01:30, are read back
+		DateColumn column = DateColumn.open(file);
+		assertEquals(zones[2].getID(), column.getTimeZone().getID());
+		column.close();
+	}
+
+	@Test
+	public void emptyColumn() throws IOException {
+		Path file = folder.newFile().toPath();
+		DateColumn.create(file, DateColumn.MILLIS).close();
+		DateColumn column = DateColumn.open(file);
+		assertEquals(0, column.size());
+		assertEquals(0, column.count(Long.MIN_VALUE + 1, Long.MAX_VALUE));
+		column.close();
+	}
+
+	@Test
+	public void countAndScan() throws IOException {
+		Random random = new Random(22);
+		for (int unit = DateColumn.DAYS; unit <= DateColumn.MILLIS; unit++) {
+			long[] values = new long[20000];
+			Path file = folder.newFile().toPath();
+			DateColumn.Writer writer = DateColumn.create(file, unit, 64, TOKYO);
+			long value = unit == DateColumn.DAYS ? 14000 : 1200000000000L;
+			long stride = unit == DateColumn.DAYS ? 3 : 3 * DateMath.MILLIS_PER_DAY;
+			for (int i = 0; i < values.length; i++) {
+				// mostly increasing, with nulls and outliers
+				value += random.nextInt(3) * (stride / 3);
+				int kind = random.nextInt(50);
+				values[i] = kind == 0 ? DateColumn.NULL : kind == 1 ? value - random.nextInt(1000) * stride : value;
+				writer.add(values[i]);
+			}
+			writer.close();
+			DateColumn column = DateColumn.open(file);
+			assertEquals(values.length, column.size());
+			for (int q = 0; q < 200; q++) {
+				long from = values[random.nextInt(values.length)];
+				long to = values[random.nextInt(values.length)];
+				if (from == DateColumn.NULL || to == DateColumn.NULL) {
+					continue;
+				}
+				if (from > to) {
+					long swap = from;
+					from = to;
+					to = swap;
+				}
+				long expected = 0;
+				for (long v : values) {
+					if (v != DateColumn.NULL && v >= from && v <= to) {
+						expected++;
+					}
+				}
+				assertEquals(expected, column.count(from, to));
+				final long[] checked = new long[2];
+				final long[] all = values;
+				assertEquals(expected, column.scan(from, to, new DateColumn.RowVisitor() {
+					public void row(long row, long v) {
+						assertEquals(all[(int) row], v);
+						assertEquals(true, row >= checked[1]);
+						checked[1] = row + 1;
+						checked[0]++;
+					}
+				}));
+				assertEquals(expected, checked[0]);
+			}
+			for (int i = 0; i < values.length; i += 97) {
+				assertEquals(values[i], column.getLong(i));
+			}
+			column.close();
+		}
+	}
+}
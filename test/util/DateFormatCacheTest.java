@@ -0,0 +1,76 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Title:        DateFormatCache test.
+ * Description:  Cached formats and parsers follow changes of the default time zone and
+ *               locale, as a new <code>SimpleDateFormat</code> does.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class DateFormatCacheTest {
+
+	private TimeZone zone;
+
+	private Locale locale;
+
+	@Before
+	public void saveDefaults() {
+		zone = TimeZone.getDefault();
+		locale = Locale.getDefault();
+	}
+
+	@After
+	public void restoreDefaults() {
+		TimeZone.setDefault(zone);
+		Locale.setDefault(locale);
+	}
+
+	@Test
+	public void formatFollowsDefaultZone() {
+		Date date = new Date(1262349045000L);
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+		assertEquals("2010-01-01 13:30:45", DateFormatCache.format(UDate.TIMESTAMP, date));
+		TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+		assertEquals("2010-01-01 07:30:45", DateFormatCache.format(UDate.TIMESTAMP, date));
+	}
+
+	@Test
+	public void formatInZoneDoesNotStick() {
+		Date date = new Date(1262349045000L);
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+		assertEquals("2010-01-01 12:30:45", DateFormatCache.format(UDate.TIMESTAMP, date, TimeZone.getTimeZone("GMT")));
+		assertEquals("2010-01-01 13:30:45", DateFormatCache.format(UDate.TIMESTAMP, date));
+	}
+
+	@Test
+	public void formatFollowsDefaultLocale() {
+		Date date = new Date(1262349045000L);
+		String pattern = "dd MMMM yyyy";
+		Locale.setDefault(Locale.ITALY);
+		assertEquals(new SimpleDateFormat(pattern).format(date), DateFormatCache.format(pattern, date));
+		Locale.setDefault(Locale.US);
+		assertEquals(new SimpleDateFormat(pattern).format(date), DateFormatCache.format(pattern, date));
+	}
+
+	@Test
+	public void parseFollowsDefaultZone() throws Exception {
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+		assertEquals(1262349045000L, DateParser.parse(UDate.TIMESTAMP, "2010-01-01 13:30:45", true).getTime());
+		assertEquals(1262349045000L, DateFormatCache.parse("yyyy/MM/dd HH:mm:ss", "2010/01/01 13:30:45", true).getTime());
+		TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+		assertEquals(1262349045000L, DateParser.parse(UDate.TIMESTAMP, "2010-01-01 07:30:45", true).getTime());
+		assertEquals(1262349045000L, DateFormatCache.parse("yyyy/MM/dd HH:mm:ss", "2010/01/01 07:30:45", true).getTime());
+	}
+}
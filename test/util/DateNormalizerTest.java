@@ -0,0 +1,172 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Title:        DateNormalizer test.
+ * Description:  <code>UDate.formatta()</code> gives, for every input shape, the output of
+ *               the substring-based implementation it replaced, kept below as the
+ *               reference; random inputs are checked against it as well, and the char
+ *               and byte forms against each other.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class DateNormalizerTest {
+
+	// Input, output of formatta
+	private static final String[][] SHAPES = {
+			{ "", "" },
+			{ "1/2/24", "01/02/24" },
+			{ "1.2.24", "01/02/24" },
+			{ "1-2-24", "01/02/24" },
+			{ "1 2 24", "01/02/24" },
+			{ "010224", "01/02/24" },
+			{ "1x2y24", "1x/2y/24" },
+			{ "1/12/24", "01/12/24" },
+			{ "12/1/24", "12/01/24" },
+			{ "1/2/2024", "01/02/2024" },
+			{ "12/01/24", "12/01/24" },
+			{ "12.01 24", "12/01/24" },
+			{ "12012024", "12/01/2024" },
+			{ "1/12/2024", "01/12/2024" },
+			{ "12/1/2024", "12/01/2024" },
+			{ "2024-01-12", "12/01/2024" },
+			{ "+202-01-12", "12/01/+202" },
+			{ "-202/01/12", "12/01/-202" },
+			{ "٢٠٢٤-01-12", "12/01/٢٠٢٤" },
+			{ "12.01.2024", "12/01/2024" },
+			{ " 2024-01-1", " 2/24/01-1" },
+			{ "2024-01-12 13:45:00", "12/01/2024" },
+			{ "2024/01/12T13:45:00", "12/01/2024" },
+			{ "12/01/2024 13:45:00", "" },
+			{ "1", "" },
+			{ "12/01", "" },
+			{ "12/01/20245", "" },
+			{ "2024-01-12 13:45:00.0", "" } };
+
+	private static final char[] ALPHABET = { '0', '1', '2', '9', '/', '.', '-', ' ', '+', 'a', ':', '٣', 'é' };
+
+	@Test
+	public void shapes() {
+		for (String[] shape : SHAPES) {
+			assertEquals(shape[0], shape[1], legacy(shape[0]));
+			assertEquals(shape[0], shape[1], UDate.formatta(shape[0]));
+			char[] buf = new char[DateNormalizer.MAX_LENGTH + 3];
+			int len = UDate.formatta(new StringBuilder(shape[0]), buf, 3);
+			assertEquals(shape[0], shape[1], new String(buf, 3, len));
+		}
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void nullInput() {
+		UDate.formatta(null);
+	}
+
+	@Test
+	public void random() {
+		Random random = new Random(9);
+		int[] lengths = { 5, 6, 7, 8, 9, 10, 11, 19, 20 };
+		for (int n = 0; n < 100000; n++) {
+			char[] chars = new char[lengths[random.nextInt(lengths.length)]];
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+			}
+			String text = new String(chars);
+			String expected = legacy(text);
+			assertEquals(text, expected, UDate.formatta(text));
+			if (text.indexOf('٣') < 0) {
+				byte[] src = text.getBytes(StandardCharsets.ISO_8859_1);
+				byte[] dst = new byte[DateNormalizer.MAX_LENGTH];
+				int len = DateNormalizer.normalize(src, 0, src.length, dst, 0);
+				assertEquals(text, expected, new String(dst, 0, len, StandardCharsets.ISO_8859_1));
+			}
+		}
+	}
+
+	/**
+	 * formatta as it was before DateNormalizer.
+	 */
+	private static String legacy(String strData) {
+		String dd;
+		String mm;
+		String yy;
+		if (strData.equals("")) {
+			return "";
+		} else if (strData.length() == 6) {
+			if (isSeparator(strData.substring(1, 2))) {
+				dd = strData.substring(0, 1);
+				mm = strData.substring(2, 3);
+				yy = strData.substring(4, 6);
+				return "0" + dd + "/0" + mm + "/" + yy;
+			}
+			dd = strData.substring(0, 2);
+			mm = strData.substring(2, 4);
+			yy = strData.substring(4, 6);
+			return dd + "/" + mm + "/" + yy;
+		} else if (strData.length() == 7) {
+			if (isSeparator(strData.substring(1, 2))) {
+				dd = strData.substring(0, 1);
+				mm = strData.substring(2, 4);
+				yy = strData.substring(5, 7);
+				return "0" + dd + "/" + mm + "/" + yy;
+			}
+			dd = strData.substring(0, 2);
+			mm = strData.substring(3, 4);
+			yy = strData.substring(5, 7);
+			return dd + "/0" + mm + "/" + yy;
+		} else if (strData.length() == 8) {
+			if (isSeparator(strData.substring(1, 2))) {
+				dd = strData.substring(0, 1);
+				mm = strData.substring(2, 3);
+				yy = strData.substring(4, 8);
+				return "0" + dd + "/0" + mm + "/" + yy;
+			} else if (isSeparator(strData.substring(2, 3))) {
+				dd = strData.substring(0, 2);
+				mm = strData.substring(3, 5);
+				yy = strData.substring(6, 8);
+				return dd + "/" + mm + "/" + yy;
+			}
+			dd = strData.substring(0, 2);
+			mm = strData.substring(2, 4);
+			yy = strData.substring(4, 8);
+			return dd + "/" + mm + "/" + yy;
+		} else if (strData.length() == 9) {
+			if (isSeparator(strData.substring(1, 2))) {
+				dd = strData.substring(0, 1);
+				mm = strData.substring(2, 4);
+				yy = strData.substring(5, 9);
+				return "0" + dd + "/" + mm + "/" + yy;
+			}
+			dd = strData.substring(0, 2);
+			mm = strData.substring(3, 4);
+			yy = strData.substring(5, 9);
+			return dd + "/0" + mm + "/" + yy;
+		} else if (strData.length() == 10 && isInteger(strData.substring(0, 4))) {
+			return strData.substring(8, 10) + "/" + strData.substring(5, 7) + "/" + strData.substring(0, 4);
+		} else if (strData.length() == 10) {
+			return strData.substring(0, 2) + "/" + strData.substring(3, 5) + "/" + strData.substring(6, 10);
+		} else if (strData.length() == 19 && isInteger(strData.substring(0, 4))) {
+			return strData.substring(8, 10) + "/" + strData.substring(5, 7) + "/" + strData.substring(0, 4);
+		}
+		return "";
+	}
+
+	private static boolean isSeparator(String s) {
+		return s.equals("/") || s.equals(".") || s.equals("-") || s.equals(" ");
+	}
+
+	private static boolean isInteger(String s) {
+		try {
+			Integer.parseInt(s);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+}
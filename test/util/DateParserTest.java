@@ -0,0 +1,160 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Title:        DateParser test.
+ * Description:  Texts built from valid, invalid and odd fields and separators are parsed
+ *               by <code>DateParser</code> and by <code>SimpleDateFormat</code>: an
+ *               <code>OK</code> text gives the date <code>SimpleDateFormat</code> gives, a
+ *               <code>MALFORMED</code> or <code>INVALID</code> one is rejected by it, and
+ *               <code>DateParser.parse()</code> returns or throws exactly as it does.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class DateParserTest {
+
+	// Days and months, in range or not, and odd shapes
+	private static final String[] SMALL = { "1", "01", "001", "9", "12", "13", "28", "29", "30", "31", "32", "0",
+			"00", "10", "15", "4", "5", "99", "", " 1", "+1", "-1", "1a", "١", "2147483648" };
+
+	// Leap and common years, two-digit years, the cutover year and beyond 9999
+	private static final String[] YEARS = { "2024", "2023", "2000", "1900", "2100", "1600", "1582", "1583", "1",
+			"0001", "0", "24", "99", "00", "450", "9999", "10000", "123456789", "", "+2024", "-44", " 2024",
+			"2024x", "2024 ", "20 24" };
+
+	private static final String[] HOURS = { "0", "00", "23", "24", "59", "60", "7", "" };
+
+	private static final String[] SEPARATORS = { "/", "-", " ", ":", ".", "//", "" };
+
+	@Test
+	public void data() {
+		Random random = new Random(3);
+		for (int n = 0; n < 20000; n++) {
+			String text = n < SMALL.length * SMALL.length
+					? SMALL[n % SMALL.length] + "/" + SMALL[n / SMALL.length] + "/2024"
+					: pick(random, SMALL) + separator(random, '/') + pick(random, SMALL) + separator(random, '/')
+							+ pick(random, YEARS);
+			check("dd/MM/yyyy", text, false);
+			DateParser.Result result = new DateParser.Result();
+			int status = DateParser.parseData(text, result);
+			checkStatus("dd/MM/yyyy", text, false, status, result);
+			byte[] bytes = ("##" + text).getBytes(StandardCharsets.ISO_8859_1);
+			if (text.equals(new String(bytes, 2, bytes.length - 2, StandardCharsets.ISO_8859_1))) {
+				DateParser.Result fromBytes = new DateParser.Result();
+				assertEquals(text, status, DateParser.parseData(bytes, 2, bytes.length - 2, fromBytes));
+				// positions in the buffer
+				assertEquals(text, result.getErrorIndex() < 0 ? -1 : result.getErrorIndex() + 2,
+						fromBytes.getErrorIndex());
+			}
+		}
+	}
+
+	@Test
+	public void leapYears() {
+		for (int year = 1583; year <= 2500; year++) {
+			check("dd/MM/yyyy", "29/02/" + year, false);
+			check("dd/MM/yyyy", "28/02/" + year, false);
+			check(UDate.TIMESTAMP, year + "-02-29 12:00:00", false);
+			check(UDate.TIMESTAMP, year + "-02-29 12:00:00", true);
+		}
+		for (int year = 0; year < 100; year++) {
+			check("dd/MM/yyyy", "29/02/" + year, false);
+			check("dd/MM/yyyy", "31/12/" + (year < 10 ? "0" : "") + year, false);
+			check(UDate.TIMESTAMP, year + "-01-01 00:00:00", false);
+		}
+	}
+
+	@Test
+	public void timestamp() {
+		Random random = new Random(5);
+		for (int n = 0; n < 40000; n++) {
+			boolean lenient = (n & 1) == 0;
+			String text = pick(random, YEARS) + separator(random, '-') + pick(random, SMALL) + separator(random, '-')
+					+ pick(random, SMALL) + separator(random, ' ') + pick(random, HOURS) + separator(random, ':')
+					+ pick(random, HOURS) + separator(random, ':') + pick(random, HOURS)
+					+ (random.nextInt(8) == 0 ? pick(random, SEPARATORS) + "9" : "");
+			check(UDate.TIMESTAMP, text, lenient);
+			DateParser.Result result = new DateParser.Result();
+			checkStatus(UDate.TIMESTAMP, text, lenient, DateParser.parseTimestamp(text, lenient, result), result);
+		}
+	}
+
+	@Test
+	public void cutover() {
+		for (int day = 1; day <= 31; day++) {
+			check("dd/MM/yyyy", day + "/10/1582", false);
+			check(UDate.TIMESTAMP, "1582-10-" + day + " 00:00:00", false);
+			check(UDate.TIMESTAMP, "1582-10-" + day + " 00:00:00", true);
+		}
+	}
+
+	private static String pick(Random random, String[] values) {
+		return values[random.nextInt(values.length)];
+	}
+
+	// The separator of the layout most of the time
+	private static String separator(Random random, char separator) {
+		return random.nextInt(6) > 0 ? String.valueOf(separator) : pick(random, SEPARATORS);
+	}
+
+	/**
+	 * DateParser.parse() returns or throws as SimpleDateFormat.parse().
+	 */
+	private static void check(String pattern, String text, boolean lenient) {
+		Object expected = simpleDateFormat(pattern, text, lenient);
+		Object actual;
+		try {
+			actual = DateParser.parse(pattern, text, lenient);
+		} catch (ParseException e) {
+			actual = Integer.valueOf(e.getErrorOffset());
+		}
+		assertEquals(pattern + " \"" + text + "\" lenient " + lenient, expected, actual);
+	}
+
+	/**
+	 * A decided status agrees with SimpleDateFormat.
+	 */
+	private static void checkStatus(String pattern, String text, boolean lenient, int status, DateParser.Result result) {
+		String what = pattern + " \"" + text + "\" lenient " + lenient + " status " + status;
+		assertEquals(what, status, result.getStatus());
+		Object expected = simpleDateFormat(pattern, text, lenient);
+		switch (status) {
+		case DateParser.OK:
+			assertEquals(what, expected, new Date(result.getTimeInMillis()));
+			assertEquals(what, -1, result.getErrorIndex());
+			break;
+		case DateParser.MALFORMED:
+		case DateParser.INVALID:
+			assertEquals(what, expected, Integer.valueOf(result.getErrorIndex()));
+			break;
+		default:
+			assertEquals(what, DateParser.UNSUPPORTED, status);
+		}
+	}
+
+	/**
+	 * The date SimpleDateFormat gives, or the error offset it throws.
+	 */
+	private static Object simpleDateFormat(String pattern, String text, boolean lenient) {
+		SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+		sdf.setLenient(lenient);
+		try {
+			Date date = sdf.parse(text);
+			assertTrue(date != null);
+			return date;
+		} catch (ParseException e) {
+			return Integer.valueOf(e.getErrorOffset());
+		}
+	}
+}
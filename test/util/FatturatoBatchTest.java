@@ -0,0 +1,205 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Title:        FatturatoBatch test.
+ * Description:  Runs the batch against an in-memory H2 database with the ES14 tables and
+ *               checks the totals and <code>v_esito</code>: 0 for an order without details
+ *               or without invoiced details, <code>NULL</code> for a <code>NULL</code>
+ *               amount, and the same totals whatever the fetch and batch sizes.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class FatturatoBatchTest {
+
+	private static int databases;
+
+	private String url;
+
+	private Connection con;
+
+	@Before
+	public void open() throws SQLException {
+		url = "jdbc:h2:mem:fatturato" + (++databases);
+		con = DriverManager.getConnection(url);
+		Statement stmt = con.createStatement();
+		stmt.execute("CREATE TABLE ORDINEACQUISTO (IDORDINEACQUISTO BIGINT PRIMARY KEY, FATTURATO NUMERIC(14, 2))");
+		stmt.execute("CREATE TABLE ORDINEACQUISTODETTAGLIO (IDORDINEDIACQUISTODETTAGLIO BIGINT PRIMARY KEY,"
+				+ " IDORDINEACQUISTO BIGINT REFERENCES ORDINEACQUISTO)");
+		stmt.execute("CREATE TABLE FATTURAPASSIVADETTAGLIO (IDFATTURAPASSIVADETTAGLIO BIGINT PRIMARY KEY,"
+				+ " IDORDINEDIACQUISTODETTAGLIO BIGINT REFERENCES ORDINEACQUISTODETTAGLIO, IMPORTO NUMERIC(12, 2))");
+		stmt.close();
+	}
+
+	@After
+	public void close() throws SQLException {
+		con.close();
+	}
+
+	@Test
+	public void totals() throws SQLException {
+		// 1: no details
+		order(1);
+		// 2: details without invoice rows
+		order(2);
+		detail(20, 2);
+		detail(21, 2);
+		// 3: invoiced and not invoiced details
+		order(3);
+		detail(30, 3);
+		detail(31, 3);
+		detail(32, 3);
+		invoice(300, 30, "10.50");
+		invoice(301, 30, "20.25");
+		invoice(302, 32, "5.00");
+		// 4: a NULL amount
+		order(4);
+		detail(40, 4);
+		detail(41, 4);
+		invoice(400, 40, "7.00");
+		invoice(401, 41, null);
+		invoice(402, 41, "3.00");
+		FatturatoBatch batch = new FatturatoBatch();
+		assertEquals(1, batch.run(con));
+		assertEquals(4, batch.getOrders());
+		assertEquals(6, batch.getInvoiceRows());
+		Map<Long, BigDecimal> totals = fatturato();
+		assertEquals(new BigDecimal("0.00"), totals.get(Long.valueOf(1)));
+		assertEquals(new BigDecimal("0.00"), totals.get(Long.valueOf(2)));
+		assertEquals(new BigDecimal("35.75"), totals.get(Long.valueOf(3)));
+		assertTrue(totals.containsKey(Long.valueOf(4)));
+		assertNull(totals.get(Long.valueOf(4)));
+	}
+
+	@Test
+	public void noInvoiceRows() throws SQLException {
+		order(1);
+		order(2);
+		detail(20, 2);
+		FatturatoBatch batch = new FatturatoBatch();
+		assertEquals(0, batch.run(con));
+		assertEquals(2, batch.getOrders());
+		assertEquals(0, batch.getInvoiceRows());
+		Map<Long, BigDecimal> totals = fatturato();
+		assertEquals(new BigDecimal("0.00"), totals.get(Long.valueOf(1)));
+		assertEquals(new BigDecimal("0.00"), totals.get(Long.valueOf(2)));
+	}
+
+	@Test
+	public void emptyTables() throws SQLException {
+		FatturatoBatch batch = new FatturatoBatch();
+		assertEquals(0, batch.run(con));
+		assertEquals(0, batch.getOrders());
+	}
+
+	/**
+	 * Orders of many rows read a few rows at a time, with batches ending while an
+	 * order is still being read, committed one by one on a separate connection.
+	 */
+	@Test
+	public void commitEachBatch() throws SQLException {
+		Map<Long, BigDecimal> expected = new HashMap<Long, BigDecimal>();
+		long invoices = 0;
+		for (long o = 1; o <= 7; o++) {
+			order(o);
+			BigDecimal total = BigDecimal.ZERO.setScale(2);
+			for (long d = 0; d < o % 4; d++) {
+				long detail = o * 10 + d;
+				detail(detail, o);
+				for (long f = 0; f < 3; f++) {
+					BigDecimal amount = new BigDecimal(o * 100 + d * 10 + f).movePointLeft(2);
+					invoice(detail * 10 + f, detail, amount.toPlainString());
+					total = total.add(amount);
+					invoices++;
+				}
+			}
+			expected.put(Long.valueOf(o), total);
+		}
+		Connection write = DriverManager.getConnection(url);
+		try {
+			write.setAutoCommit(false);
+			FatturatoBatch batch = new FatturatoBatch();
+			batch.setFetchSize(2);
+			batch.setBatchSize(2);
+			batch.setCommitEachBatch(true);
+			assertEquals(1, batch.run(con, write));
+			assertEquals(7, batch.getOrders());
+			assertEquals(invoices, batch.getInvoiceRows());
+			// every batch, the last one included, is already committed
+			write.rollback();
+		} finally {
+			write.close();
+		}
+		assertEquals(expected, fatturato());
+	}
+
+	@Test
+	public void oneTransactionByDefault() throws SQLException {
+		order(1);
+		detail(10, 1);
+		invoice(100, 10, "1.00");
+		Connection write = DriverManager.getConnection(url);
+		try {
+			write.setAutoCommit(false);
+			FatturatoBatch batch = new FatturatoBatch();
+			batch.setBatchSize(1);
+			assertEquals(1, batch.run(con, write));
+			write.rollback();
+		} finally {
+			write.close();
+		}
+		assertEquals(new BigDecimal("-1.00"), fatturato().get(Long.valueOf(1)));
+	}
+
+	private void order(long id) throws SQLException {
+		insert("INSERT INTO ORDINEACQUISTO VALUES (?, -1)", Long.valueOf(id));
+	}
+
+	private void detail(long id, long order) throws SQLException {
+		insert("INSERT INTO ORDINEACQUISTODETTAGLIO VALUES (?, ?)", Long.valueOf(id), Long.valueOf(order));
+	}
+
+	private void invoice(long id, long detail, String amount) throws SQLException {
+		insert("INSERT INTO FATTURAPASSIVADETTAGLIO VALUES (?, ?, ?)", Long.valueOf(id), Long.valueOf(detail),
+				amount == null ? null : new BigDecimal(amount));
+	}
+
+	private void insert(String sql, Object... values) throws SQLException {
+		PreparedStatement ps = con.prepareStatement(sql);
+		for (int i = 0; i < values.length; i++) {
+			ps.setObject(i + 1, values[i]);
+		}
+		ps.executeUpdate();
+		ps.close();
+	}
+
+	private Map<Long, BigDecimal> fatturato() throws SQLException {
+		Map<Long, BigDecimal> totals = new HashMap<Long, BigDecimal>();
+		Statement stmt = con.createStatement();
+		ResultSet rs = stmt.executeQuery("SELECT IDORDINEACQUISTO, FATTURATO FROM ORDINEACQUISTO");
+		while (rs.next()) {
+			totals.put(Long.valueOf(rs.getLong(1)), rs.getBigDecimal(2));
+		}
+		rs.close();
+		stmt.close();
+		return totals;
+	}
+}
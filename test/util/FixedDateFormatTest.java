@@ -0,0 +1,115 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Title:        FixedDateFormat test.
+ * Description:  The fixed layouts written by <code>UDate</code> and <code>CompactUDate</code>
+ *               are the ones of <code>new SimpleDateFormat(pattern)</code>, whatever zone the
+ *               date was created in and whatever the current default zone and locale.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class FixedDateFormatTest {
+
+	private static final String[] PATTERNS = { UDate.TIMESTAMP, UDate.DATESTAMP, UDate.TIME, "dd/MM/yyyy" };
+
+	private static final String[] ZONES = { "Europe/Rome", "America/New_York", "Asia/Kolkata", "Australia/Lord_Howe",
+			"GMT" };
+
+	private TimeZone zone;
+
+	private Locale locale;
+
+	@Before
+	public void saveDefaults() {
+		zone = TimeZone.getDefault();
+		locale = Locale.getDefault();
+	}
+
+	@After
+	public void restoreDefaults() {
+		TimeZone.setDefault(zone);
+		Locale.setDefault(locale);
+	}
+
+	@Test
+	public void formatsInDefaultZoneAtCallTime() {
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+		UDate date = UDate.newInstance(1262349045000L);
+		CompactUDate compact = new CompactUDate(1262349045000L);
+		TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+		assertEquals("2010-01-01 07:30:45", date.getDate());
+		assertEquals("'2010-01-01 07:30:45'", date.getDateForDB());
+		assertEquals("2010-01-01 07:30:45", compact.getDate());
+	}
+
+	@Test
+	public void deserializedForeignZone() throws Exception {
+		TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+		UDate date = UDate.newInstance(1262349045000L);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(date);
+		out.close();
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		UDate read = (UDate) in.readObject();
+		assertEquals("2010-01-01 13:30:45", read.getDate());
+		assertEquals("01/01/2010", read.getDate("dd/MM/yyyy"));
+	}
+
+	@Test
+	public void matchesSimpleDateFormat() {
+		Random random = new Random(2);
+		for (String id : ZONES) {
+			TimeZone created = TimeZone.getTimeZone(id);
+			for (String defaultId : ZONES) {
+				TimeZone.setDefault(created);
+				long[] millis = new long[2000];
+				UDate[] dates = new UDate[millis.length];
+				for (int i = 0; i < millis.length; i++) {
+					// years 1 - 9999, with the cutover and the year ends
+					millis[i] = -62135769600000L + (long) (random.nextDouble() * 315537897600000L);
+					dates[i] = UDate.newInstance(new Date(millis[i]));
+				}
+				TimeZone.setDefault(TimeZone.getTimeZone(defaultId));
+				for (String pattern : PATTERNS) {
+					SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+					for (int i = 0; i < millis.length; i++) {
+						String expected = sdf.format(new Date(millis[i]));
+						assertEquals(id + " " + defaultId + " " + millis[i], expected, dates[i].getDate(pattern));
+						assertEquals(expected, new CompactUDate(millis[i], created).getDate(pattern));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void followsDefaultLocale() {
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+		UDate date = UDate.newInstance(1262349045000L);
+		assertEquals("2010-01-01 13:30:45", date.getDate());
+		// Buddhist calendar: the fast path must step aside
+		Locale.setDefault(new Locale("th", "TH", "TH"));
+		assertEquals(new SimpleDateFormat(UDate.TIMESTAMP).format(new Date(1262349045000L)), date.getDate());
+		Locale.setDefault(Locale.ITALY);
+		assertEquals("2010-01-01 13:30:45", date.getDate());
+	}
+}
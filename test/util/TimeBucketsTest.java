@@ -0,0 +1,166 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Title:        TimeBuckets test.
+ * Description:  Roll-ups of inputs large enough to be split over the fork-join pool (the
+ *               build runs the tests with a common pool of 4 threads), checked bucket by
+ *               bucket against <code>GregorianCalendar</code> fields.  Values are whole
+ *               numbers, so partial sums add up exactly.  The build runs them once
+ *               adding rows one at a time and once, in <code>vectorTest</code>, with the
+ *               Vector API kernel.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class TimeBucketsTest {
+
+	private static final short[] UNITS = { UDate.UNIT_HOURS, UDate.UNIT_DAYS, UDate.UNIT_MONTHS, UDate.UNIT_YEARS };
+
+	@Test
+	public void kernel() {
+		// set by the build for the run with the Vector API kernel on the class path
+		assertEquals(Boolean.getBoolean("util.TimeBucketsTest.vector"), TimeBuckets.isVectorized());
+	}
+
+	@Test
+	public void sorted() {
+		check(rows(300001, true), TimeZone.getTimeZone("Europe/Rome"));
+	}
+
+	@Test
+	public void unsorted() {
+		check(rows(100003, false), TimeZone.getTimeZone("America/Sao_Paulo"));
+	}
+
+	@Test
+	public void countsOnly() {
+		long[] millis = rows(70000, true);
+		TimeBuckets buckets = TimeBuckets.rollUp(millis, null, UDate.UNIT_DAYS, TimeZone.getTimeZone("GMT"));
+		long total = 0;
+		for (long count : buckets.getCounts()) {
+			total += count;
+		}
+		assertEquals(millis.length, total);
+	}
+
+	@Test
+	public void limitsOfLong() {
+		long[] first = new long[1000];
+		long[] last = new long[1000];
+		for (int i = 0; i < first.length; i++) {
+			first[i] = Long.MIN_VALUE + 3 * DateMath.MILLIS_PER_DAY + i * 1234567L;
+			last[i] = Long.MAX_VALUE - 3 * DateMath.MILLIS_PER_DAY - i * 1234567L;
+		}
+		check(first, TimeZone.getTimeZone("GMT"));
+		check(last, TimeZone.getTimeZone("GMT"));
+		check(first, TimeZone.getTimeZone("Europe/Rome"));
+		check(last, TimeZone.getTimeZone("America/New_York"));
+	}
+
+	@Test
+	public void tooManyBuckets() {
+		TimeZone gmt = TimeZone.getTimeZone("GMT");
+		rejected(new long[] { Long.MIN_VALUE + 5, 0 }, UDate.UNIT_YEARS, gmt, "Too many buckets");
+		rejected(new long[] { 0, Long.MAX_VALUE }, UDate.UNIT_YEARS, gmt, "Too many buckets");
+		rejected(new long[] { Long.MIN_VALUE, Long.MAX_VALUE }, UDate.UNIT_HOURS, gmt, "Too many buckets");
+		rejected(new long[] { 0, 1L << 46 }, UDate.UNIT_HOURS, gmt, "Too many buckets");
+		rejected(new long[] { Long.MIN_VALUE + 5 }, UDate.UNIT_DAYS, gmt, "Instant out of range");
+		rejected(new long[] { Long.MAX_VALUE }, UDate.UNIT_YEARS, gmt, "Instant out of range");
+	}
+
+	private static void rejected(long[] millis, short unit, TimeZone zone, String message) {
+		try {
+			TimeBuckets.rollUp(millis, null, unit, zone);
+			fail("Rolled up " + Arrays.toString(millis));
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+		}
+	}
+
+	private static long[] rows(int n, boolean sorted) {
+		Random random = new Random(n);
+		long[] millis = new long[n];
+		// about three years from 2009, across the summer time changes
+		long m = 1230768000000L;
+		for (int i = 0; i < n; i++) {
+			m = sorted ? m + random.nextInt(600000) : 1230768000000L + (long) (random.nextDouble() * 94608000000L);
+			millis[i] = m;
+		}
+		return millis;
+	}
+
+	private static void check(long[] millis, TimeZone zone) {
+		double[] values = new double[millis.length];
+		Random random = new Random(millis.length);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(2001) - 1000;
+		}
+		for (short unit : UNITS) {
+			Map<Long, double[]> expected = new HashMap<Long, double[]>();
+			GregorianCalendar cal = new GregorianCalendar(zone);
+			for (int i = 0; i < millis.length; i++) {
+				cal.setTimeInMillis(millis[i]);
+				long local = millis[i] + zone.getOffset(millis[i]);
+				long key;
+				switch (unit) {
+				case UDate.UNIT_HOURS:
+					key = Math.floorDiv(local, DateMath.MILLIS_PER_HOUR);
+					break;
+				case UDate.UNIT_DAYS:
+					key = Math.floorDiv(local, DateMath.MILLIS_PER_DAY);
+					break;
+				case UDate.UNIT_MONTHS:
+					key = year(cal) * 12L + cal.get(Calendar.MONTH);
+					break;
+				default:
+					key = year(cal);
+				}
+				double[] totals = expected.get(Long.valueOf(key));
+				if (totals == null) {
+					totals = new double[] { 0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+					expected.put(Long.valueOf(key), totals);
+				}
+				totals[0]++;
+				totals[1] += values[i];
+				totals[2] = Math.min(totals[2], values[i]);
+				totals[3] = Math.max(totals[3], values[i]);
+			}
+			TimeBuckets buckets = TimeBuckets.rollUp(millis, values, unit, zone);
+			int nonEmpty = 0;
+			for (int b = 0; b < buckets.size(); b++) {
+				double[] totals = expected.get(Long.valueOf(buckets.getKey(b)));
+				if (totals == null) {
+					assertEquals(0, buckets.getCounts()[b]);
+					continue;
+				}
+				nonEmpty++;
+				String what = "unit " + unit + " key " + buckets.getKey(b);
+				assertEquals(what, (long) totals[0], buckets.getCounts()[b]);
+				assertEquals(what, totals[1], buckets.getSums()[b], 0);
+				assertEquals(what, totals[2], buckets.getMins()[b], 0);
+				assertEquals(what, totals[3], buckets.getMaxs()[b], 0);
+			}
+			assertEquals(expected.size(), nonEmpty);
+		}
+	}
+
+	// Proleptic year: 1 BC is year 0
+	private static long year(GregorianCalendar cal) {
+		int year = cal.get(Calendar.YEAR);
+		return cal.get(Calendar.ERA) == GregorianCalendar.BC ? 1 - year : year;
+	}
+}
@@ -0,0 +1,125 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Title:        UDateBinder test.
+ * Description:  Binds dates through <code>executeBatch</code> into an in-memory H2
+ *               database and reads them back: bound values are the ones the
+ *               <code>getDateForDB()</code> and <code>getTimeForDB()</code> literals store.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class UDateBinderTest {
+
+	private Connection con;
+
+	// H2 keeps the default time zone of its first use, so it is left alone here
+	@Before
+	public void open() throws SQLException {
+		con = DriverManager.getConnection("jdbc:h2:mem:");
+		Statement stmt = con.createStatement();
+		stmt.execute("CREATE TABLE EVENTO (ID INT PRIMARY KEY, DATA TIMESTAMP, GIORNO DATE, ORA TIME)");
+		stmt.close();
+	}
+
+	@After
+	public void close() throws SQLException {
+		con.close();
+	}
+
+	@Test
+	public void rowBinderMatchesLiterals() throws SQLException {
+		final List<UDate> dates = Arrays.asList(date(1262349045789L), date(1277987400000L), null, date(-86399999L),
+				date(4102444799999L));
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 0; i < dates.size(); i++) {
+			ids.add(Integer.valueOf(i));
+		}
+		PreparedStatement ps = con.prepareStatement("INSERT INTO EVENTO VALUES (?, ?, ?, ?)");
+		long updated = UDateBinder.executeBatch(ps, ids, new UDateBinder.RowBinder<Integer>() {
+			public void bind(PreparedStatement statement, Integer id) throws SQLException {
+				UDate date = dates.get(id.intValue());
+				statement.setInt(1, id.intValue());
+				UDateBinder.setTimestamp(statement, 2, date);
+				UDateBinder.setDate(statement, 3, date);
+				UDateBinder.setTime(statement, 4, date);
+			}
+		}, 2);
+		ps.close();
+		assertEquals(dates.size(), updated);
+
+		Statement stmt = con.createStatement();
+		for (int i = 0; i < dates.size(); i++) {
+			UDate date = dates.get(i);
+			if (date != null) {
+				stmt.executeUpdate("INSERT INTO EVENTO VALUES (" + (100 + i) + ", " + date.getDateForDB() + ", "
+						+ date.getDateForDB(UDate.DATESTAMP) + ", " + date.getTimeForDB() + ")");
+			}
+		}
+		ResultSet rs = stmt.executeQuery("SELECT B.ID, B.DATA, B.GIORNO, B.ORA, L.DATA, L.GIORNO, L.ORA "
+				+ "FROM EVENTO B LEFT JOIN EVENTO L ON L.ID = B.ID + 100 WHERE B.ID < 100 ORDER BY B.ID");
+		for (int i = 0; i < dates.size(); i++) {
+			assertTrue(rs.next());
+			assertEquals(i, rs.getInt(1));
+			if (dates.get(i) == null) {
+				assertNull(rs.getObject(2));
+				assertNull(rs.getObject(3));
+				assertNull(rs.getObject(4));
+			} else {
+				assertEquals(rs.getObject(5), rs.getObject(2));
+				assertEquals(rs.getObject(6), rs.getObject(3));
+				assertEquals(rs.getObject(7), rs.getObject(4));
+				assertEquals(0, rs.getTimestamp(2).getNanos() % 1000000000);
+			}
+		}
+		assertFalse(rs.next());
+		rs.close();
+		stmt.close();
+	}
+
+	@Test
+	public void dateBatch() throws SQLException {
+		List<UDate> dates = Arrays.asList(date(1262349045789L), null, date(1277987400000L));
+		Statement stmt = con.createStatement();
+		stmt.execute("CREATE SEQUENCE SEQ");
+		PreparedStatement ps = con.prepareStatement("INSERT INTO EVENTO (ID, DATA) VALUES (NEXT VALUE FOR SEQ, ?)");
+		assertEquals(3, UDateBinder.executeBatch(ps, 1, dates, 2));
+		ps.close();
+		ResultSet rs = stmt.executeQuery("SELECT FORMATDATETIME(DATA, 'yyyy-MM-dd HH:mm:ss.SSS') FROM EVENTO ORDER BY ID");
+		SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+		assertTrue(rs.next());
+		assertEquals(sdf.format(new Date(1262349045000L)), rs.getString(1));
+		assertTrue(rs.next());
+		assertNull(rs.getString(1));
+		assertTrue(rs.next());
+		assertEquals(sdf.format(new Date(1277987400000L)), rs.getString(1));
+		assertFalse(rs.next());
+		rs.close();
+		stmt.close();
+	}
+
+	private static UDate date(long millis) {
+		return UDate.newInstance(new Date(millis));
+	}
+}
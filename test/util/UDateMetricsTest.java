@@ -0,0 +1,58 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Title:        UDateMetrics test.
+ * Description:  Recording through the <code>UDate</code> entry points, and the bound on
+ *               the number of patterns kept per operation.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class UDateMetricsTest {
+
+	@Before
+	public void enable() {
+		UDateMetrics.reset();
+		UDateMetrics.setEnabled(true);
+	}
+
+	@After
+	public void disable() {
+		UDateMetrics.setEnabled(false);
+		UDateMetrics.reset();
+	}
+
+	@Test
+	public void recordsEntryPoints() {
+		UDate date = UDate.newInstance(1262349045000L);
+		date.getDate();
+		date.getDate("dd/MM/yyyy");
+		date.getDate("dd/MM/yyyy");
+		assertEquals(1, UDateMetrics.get("getDate", UDate.TIMESTAMP).getCalls());
+		assertEquals(2, UDateMetrics.get("getDate", "dd/MM/yyyy").getCalls());
+		assertEquals(0, UDateMetrics.get("getDate", "dd/MM/yyyy").getFailures());
+	}
+
+	@Test
+	public void patternsAreBounded() {
+		UDate date = UDate.newInstance(1262349045000L);
+		int extra = 100;
+		for (int i = 0; i < UDateMetrics.MAX_PATTERNS + extra; i++) {
+			date.getDate("'" + i + "' yyyy");
+		}
+		// again, once full: known patterns keep their counters
+		date.getDate("'0' yyyy");
+		date.getDate("'" + (UDateMetrics.MAX_PATTERNS + 1) + "' yyyy");
+		assertEquals(2, UDateMetrics.get("getDate", "'0' yyyy").getCalls());
+		assertNull(UDateMetrics.get("getDate", "'" + UDateMetrics.MAX_PATTERNS + "' yyyy"));
+		assertEquals(extra + 1, UDateMetrics.get("getDate", UDateMetrics.OTHER).getCalls());
+		assertEquals(UDateMetrics.MAX_PATTERNS + 1, UDateMetrics.report().length);
+	}
+}
@@ -0,0 +1,131 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Title:        UDateRange test.
+ * Description:  Sizes and elements of <code>UDateRange.of()</code> for every unit, with
+ *               a step of one and spans up to the <code>Integer.MAX_VALUE</code> cap,
+ *               checked against <code>GregorianCalendar.add()</code>.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class UDateRangeTest {
+
+	private static final short[] UNITS = { UDate.UNIT_DAYS, UDate.UNIT_MONTHS, UDate.UNIT_YEARS, UDate.UNIT_HOURS,
+			UDate.UNIT_MINUTES, UDate.UNIT_SECONDS, UDate.UNIT_MILLISECONDS };
+
+	private static final int[] STEPS = { 1, 2, 7, 1000, Integer.MAX_VALUE };
+
+	private TimeZone zone;
+
+	@Before
+	public void setZone() {
+		zone = TimeZone.getDefault();
+		TimeZone.setDefault(TimeZone.getTimeZone("Europe/Rome"));
+	}
+
+	@After
+	public void restoreZone() {
+		TimeZone.setDefault(zone);
+	}
+
+	@Test
+	public void stepOneDays() {
+		assertEquals(47483, UDateRange.of(date(1970, 1, 1), date(2100, 1, 1), UDate.UNIT_DAYS, 1).size());
+		assertEquals(11, UDateRange.of(date(2010, 1, 1), date(2010, 1, 11), UDate.UNIT_DAYS, 1).size());
+		assertEquals(1, UDateRange.of(date(2010, 1, 1), date(2010, 1, 1), UDate.UNIT_DAYS, 1).size());
+		assertEquals(0, UDateRange.of(date(2010, 1, 2), date(2010, 1, 1), UDate.UNIT_DAYS, 1).size());
+	}
+
+	@Test
+	public void largeSpanYears() {
+		UDateRange range = UDateRange.of(date(1970, 1, 1), date(2100, 1, 1), UDate.UNIT_YEARS, 2);
+		assertEquals(66, range.size());
+		assertEquals("2100-01-01 00:00:00", range.get(65).getDate());
+	}
+
+	@Test
+	public void everyUnit() {
+		UDate[][] spans = { { date(2010, 1, 31), date(2010, 3, 2) }, { date(1970, 1, 1), date(2100, 1, 1) },
+				{ date(1500, 6, 15), date(1700, 6, 15) }, { date(1, 1, 1), date(9999, 12, 31) } };
+		for (UDate[] span : spans) {
+			for (short unit : UNITS) {
+				for (int step : STEPS) {
+					check(span[0], span[1], unit, step);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void addOverflowThrows() {
+		TimeZone rome = TimeZone.getTimeZone("Europe/Rome");
+		try {
+			DateMath.add(rome, 0, Calendar.YEAR, 1073741823);
+			fail();
+		} catch (ArithmeticException e) {
+			// expected
+		}
+		try {
+			DateMath.add(rome, Long.MAX_VALUE / 2, Calendar.DAY_OF_YEAR, Integer.MAX_VALUE);
+			fail();
+		} catch (ArithmeticException e) {
+			// expected
+		}
+		assertEquals(reference(rome, 0, Calendar.YEAR, 100000000), DateMath.add(rome, 0, Calendar.YEAR, 100000000));
+	}
+
+	/**
+	 * The last element is not after <code>to</code> and the next one, if the range was
+	 * not cut short, is; spot check elements in between.
+	 */
+	private static void check(UDate from, UDate to, short unit, int step) {
+		UDateRange range = UDateRange.of(from, to, unit, step);
+		int field = UDate.calendarField(unit);
+		int size = range.size();
+		String what = from.getDate() + " " + to.getDate() + " unit " + unit + " step " + step + " size " + size;
+		assertTrue(what, size >= 1);
+		long first = from.getTimeInMillis();
+		TimeZone zone = from.getTimeZone();
+		assertTrue(what, (size - 1L) * step <= Integer.MAX_VALUE);
+		assertTrue(what, reference(zone, first, field, (size - 1) * step) <= to.getTimeInMillis());
+		boolean capped = size == Integer.MAX_VALUE || (long) size * step > Integer.MAX_VALUE;
+		if (!capped) {
+			// the calendar itself overflows on the largest amounts
+			long next;
+			try {
+				next = DateMath.add(zone, first, field, size * step);
+			} catch (ArithmeticException e) {
+				next = Long.MAX_VALUE;
+			}
+			assertTrue(what, next > to.getTimeInMillis());
+		}
+		for (long i = 0; i < size; i += Math.max(1, size / 7)) {
+			assertEquals(what, reference(zone, first, field, (int) i * step), range.getTimeInMillis((int) i));
+		}
+		assertEquals(what, reference(zone, first, field, (size - 1) * step), range.getTimeInMillis(size - 1));
+	}
+
+	private static long reference(TimeZone zone, long millis, int field, int amount) {
+		GregorianCalendar cal = new GregorianCalendar(zone);
+		cal.setTimeInMillis(millis);
+		cal.add(field, amount);
+		return cal.getTimeInMillis();
+	}
+
+	private static UDate date(int year, int month, int day) {
+		return UDate.newInstance(new GregorianCalendar(year, month - 1, day).getTime());
+	}
+}
@@ -0,0 +1,157 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.SimpleTimeZone;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Title:        UDate serialization test.
+ * Description:  Streams written by the <code>UDate</code> class that serialized the whole
+ *               calendar (<code>UDate-baseline.ser</code>: five dates, the last one the
+ *               first again, then their instants and zone IDs) still read, and both forms
+ *               written now, compact and with the calendar, round-trip.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class UDateSerializationTest {
+
+	private static final TimeZone ROME = TimeZone.getTimeZone("Europe/Rome");
+
+	@Test
+	public void baselineStream() throws Exception {
+		UDate[] dates;
+		long[] millis;
+		String[] zones;
+		InputStream fixture = UDateSerializationTest.class.getResourceAsStream("UDate-baseline.ser");
+		try {
+			ObjectInputStream in = new ObjectInputStream(fixture);
+			dates = (UDate[]) in.readObject();
+			millis = (long[]) in.readObject();
+			zones = (String[]) in.readObject();
+		} finally {
+			fixture.close();
+		}
+		for (int i = 0; i < zones.length; i++) {
+			assertEquals(millis[i], dates[i].getTimeInMillis());
+			assertEquals(zones[i], dates[i].getTimeZone().getID());
+		}
+		assertFalse(dates[1].cal.isLenient());
+		assertEquals(Long.MIN_VALUE, dates[2].cal.getGregorianChange().getTime());
+		assertSame(dates[0], dates[4]);
+		assertEquals(format(millis[0]), dates[0].getDate());
+		UDate copy = UDate.newInstance(dates[0]);
+		copy.adjust(UDate.UNIT_DAYS, 1);
+		assertEquals(millis[0], dates[0].getTimeInMillis());
+		assertEquals(millis[0] + DateMath.MILLIS_PER_DAY, copy.getTimeInMillis());
+		// and they are written in the compact form now
+		byte[] bytes = serialize(dates[0]);
+		assertTrue(bytes.length + " bytes", bytes.length < 200);
+		assertEquals(millis[0], ((UDate) deserialize(bytes)).getTimeInMillis());
+	}
+
+	@Test
+	public void compact() throws Exception {
+		GregorianCalendar cal = new GregorianCalendar(ROME);
+		cal.setTimeInMillis(1277942399999L);
+		cal.setFirstDayOfWeek(Calendar.MONDAY);
+		cal.setMinimalDaysInFirstWeek(4);
+		UDate date = new UDate(cal);
+		byte[] bytes = serialize(date);
+		// no calendar in the stream
+		assertTrue(bytes.length + " bytes", bytes.length < 200);
+		UDate read = (UDate) deserialize(bytes);
+		assertEquals(date.getTimeInMillis(), read.getTimeInMillis());
+		assertSame(DateMath.intern(ROME), read.getTimeZone());
+		assertEquals(Calendar.MONDAY, read.cal.getFirstDayOfWeek());
+		assertEquals(4, read.cal.getMinimalDaysInFirstWeek());
+		assertTrue(read.cal.isLenient());
+		assertEquals(date.getDate(), read.getDate());
+	}
+
+	@Test
+	public void withCalendar() throws Exception {
+		GregorianCalendar strict = new GregorianCalendar(ROME);
+		strict.setTimeInMillis(1268532245123L);
+		strict.setLenient(false);
+		UDate read = roundTrip(new UDate(strict));
+		assertFalse(read.cal.isLenient());
+		assertEquals(1268532245123L, read.getTimeInMillis());
+
+		GregorianCalendar proleptic = new GregorianCalendar(ROME);
+		proleptic.setGregorianChange(new Date(Long.MIN_VALUE));
+		proleptic.setTimeInMillis(-15000000000000L);
+		read = roundTrip(new UDate(proleptic));
+		assertEquals(Long.MIN_VALUE, read.cal.getGregorianChange().getTime());
+		assertEquals(proleptic.get(Calendar.DAY_OF_MONTH), read.cal.get(Calendar.DAY_OF_MONTH));
+
+		// an ID the JDK knows with other rules
+		SimpleTimeZone custom = new SimpleTimeZone(3600000, "Europe/Rome");
+		GregorianCalendar customCal = new GregorianCalendar(custom);
+		customCal.setTimeInMillis(1277942399999L);
+		read = roundTrip(new UDate(customCal));
+		assertTrue(custom.hasSameRules(read.getTimeZone()));
+		assertEquals(new UDate(customCal).getHour(), read.getHour());
+	}
+
+	@Test
+	public void copiesInOneStream() throws Exception {
+		UDate date = new UDate(new GregorianCalendar(ROME));
+		UDate copy = UDate.newInstance(date);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(date);
+		out.writeObject(copy);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		UDate first = (UDate) in.readObject();
+		UDate second = (UDate) in.readObject();
+		second.adjust(UDate.UNIT_MONTHS, 1);
+		assertEquals(date.getTimeInMillis(), first.getTimeInMillis());
+		assertEquals(date.getMonth() % 12 + 1, second.getMonth());
+	}
+
+	@Test
+	public void compactUDate() throws Exception {
+		CompactUDate date = new CompactUDate(1277942399999L, ROME);
+		UDate read = roundTrip(date);
+		assertTrue(read instanceof CompactUDate);
+		assertEquals(date.getTimeInMillis(), read.getTimeInMillis());
+		assertSame(date.getTimeZone(), read.getTimeZone());
+	}
+
+	private static String format(long millis) {
+		return UDate.newInstance(new Date(millis)).getDate();
+	}
+
+	private static UDate roundTrip(UDate date) throws IOException, ClassNotFoundException {
+		return (UDate) deserialize(serialize(date));
+	}
+
+	private static byte[] serialize(Object o) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(o);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+		return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+	}
+}
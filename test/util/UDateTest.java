@@ -0,0 +1,132 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Title:        UDate test.
+ * Description:  <code>adjust()</code>, of a <code>UDate</code> and of a
+ *               <code>CompactUDate</code>, and <code>UDateSequence</code> give the
+ *               instants of <code>GregorianCalendar.add()</code> around offset changes,
+ *               at month ends and at random instants.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class UDateTest {
+
+	private static final String[] ZONES = { "Europe/Rome", "America/New_York", "America/Sao_Paulo",
+			"Australia/Lord_Howe", "Asia/Kolkata", "GMT" };
+
+	private static final short[] UNITS = { UDate.UNIT_DAYS, UDate.UNIT_MONTHS, UDate.UNIT_YEARS, UDate.UNIT_HOURS,
+			UDate.UNIT_MINUTES, UDate.UNIT_SECONDS, UDate.UNIT_MILLISECONDS };
+
+	// Calendar fields of the units, as adjust() has always used them
+	private static final int[] FIELDS = { Calendar.DAY_OF_YEAR, Calendar.MONTH, Calendar.YEAR, Calendar.HOUR,
+			Calendar.MINUTE, Calendar.SECOND, Calendar.MILLISECOND };
+
+	private static final int[] AMOUNTS = { 1, -1, 2, -2, 12, -13, 31, -59, 365, -366, 1000, 0 };
+
+	@Test
+	public void aroundOffsetChanges() {
+		for (String id : ZONES) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			ZoneRules rules = ZoneId.of(id).getRules();
+			ZoneOffsetTransition transition = rules.nextTransition(Instant.parse("2000-01-01T00:00:00Z"));
+			while (transition != null && transition.getInstant().isBefore(Instant.parse("2030-01-01T00:00:00Z"))) {
+				long t = transition.toEpochSecond() * 1000;
+				for (long delta = -DateMath.MILLIS_PER_DAY - 1; delta <= DateMath.MILLIS_PER_DAY + 1;
+						delta += 1800000) {
+					checkAll(zone, t + delta);
+				}
+				checkAll(zone, t - 1);
+				checkAll(zone, t);
+				transition = rules.nextTransition(transition.getInstant());
+			}
+		}
+	}
+
+	@Test
+	public void monthEnds() {
+		int[][] days = { { 1, 31 }, { 2, 28 }, { 2, 29 }, { 3, 31 }, { 4, 30 }, { 12, 31 } };
+		for (String id : ZONES) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			GregorianCalendar cal = new GregorianCalendar(zone);
+			for (int year = 1999; year <= 2025; year += 1) {
+				for (int[] day : days) {
+					cal.clear();
+					cal.set(year, day[0] - 1, day[1], 23, 30, 15);
+					checkAll(zone, cal.getTimeInMillis());
+					cal.set(Calendar.HOUR_OF_DAY, 0);
+					cal.set(Calendar.MINUTE, 0);
+					checkAll(zone, cal.getTimeInMillis());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void randomInstants() {
+		Random random = new Random(11);
+		for (String id : ZONES) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			for (int n = 0; n < 500; n++) {
+				// 1500 - 2400, the cutover included
+				long millis = -15000000000000L + (long) (random.nextDouble() * 28000000000000L);
+				checkAll(zone, millis);
+			}
+		}
+	}
+
+	@Test
+	public void sequence() {
+		for (String id : ZONES) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			GregorianCalendar cal = new GregorianCalendar(zone);
+			cal.clear();
+			cal.set(2011, Calendar.JANUARY, 31, 2, 30);
+			long start = cal.getTimeInMillis();
+			for (int u = 0; u < UNITS.length; u++) {
+				for (int step : new int[] { 1, -1, 7, -13 }) {
+					UDateSequence sequence = new UDateSequence(start, zone, UNITS[u], step, 400);
+					for (int i = 0; i < sequence.getCount(); i++) {
+						GregorianCalendar expected = new GregorianCalendar(zone);
+						expected.setTimeInMillis(start);
+						expected.add(FIELDS[u], i * step);
+						assertEquals(id + " unit " + UNITS[u] + " step " + step + " index " + i,
+								expected.getTimeInMillis(), sequence.nextLong());
+					}
+				}
+			}
+		}
+	}
+
+	private static void checkAll(TimeZone zone, long millis) {
+		for (int u = 0; u < UNITS.length; u++) {
+			for (int amount : AMOUNTS) {
+				GregorianCalendar expected = new GregorianCalendar(zone);
+				expected.setTimeInMillis(millis);
+				expected.add(FIELDS[u], amount);
+				String what = zone.getID() + " at " + millis + " unit " + UNITS[u] + " amount " + amount;
+				GregorianCalendar cal = new GregorianCalendar(zone);
+				cal.setTimeInMillis(millis);
+				UDate date = new UDate(cal);
+				date.adjust(UNITS[u], amount);
+				assertEquals(what, expected.getTimeInMillis(), date.getTimeInMillis());
+				UDate compact = new CompactUDate(millis, zone);
+				compact.adjust(UNITS[u], amount);
+				assertEquals(what, expected.getTimeInMillis(), compact.getTimeInMillis());
+			}
+		}
+	}
+}
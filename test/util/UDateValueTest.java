@@ -0,0 +1,76 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Title:        UDateValue test.
+ * Description:  Getters give the fields of a <code>UDate</code> in the same zone; the
+ *               text of a value is the one of its own zone, whatever the default.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class UDateValueTest {
+
+	// Winter and summer time in Rome, a date before 1970
+	private static final long[] INSTANTS = { 1268532245123L, 1277942399999L, -1234567890123L };
+
+	private static final String[] PATTERNS = { UDate.TIMESTAMP, UDate.DATESTAMP, UDate.TIME, "dd/MM/yyyy",
+			"EEE d MMM yyyy hh:mm:ss.SSS a" };
+
+	private TimeZone defaultZone;
+
+	@Before
+	public void saveDefault() {
+		defaultZone = TimeZone.getDefault();
+	}
+
+	@After
+	public void restoreDefault() {
+		TimeZone.setDefault(defaultZone);
+	}
+
+	@Test
+	public void getters() {
+		TimeZone rome = TimeZone.getTimeZone("Europe/Rome");
+		for (long millis : INSTANTS) {
+			UDateValue value = UDateValue.of(millis, rome);
+			UDate date = value.toUDate();
+			assertEquals(date.getYear(), value.getYear());
+			assertEquals(date.getMonth(), value.getMonth());
+			assertEquals(date.getDay(), value.getDay());
+			assertEquals(date.getHour(), value.getHour());
+			assertEquals(date.getMinute(), value.getMinute());
+			assertEquals(date.getSecond(), value.getSecond());
+			assertEquals(date.getMillisecond(), value.getMillisecond());
+			assertEquals(date.getDateAsTimestamp(), value.getDateAsTimestamp());
+		}
+	}
+
+	@Test
+	public void formatsInItsOwnZone() {
+		TimeZone rome = TimeZone.getTimeZone("Europe/Rome");
+		for (String id : new String[] { "Europe/Rome", "America/New_York", "Asia/Kolkata" }) {
+			TimeZone.setDefault(TimeZone.getTimeZone(id));
+			for (long millis : INSTANTS) {
+				UDateValue value = UDateValue.of(millis, rome);
+				for (String pattern : PATTERNS) {
+					SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+					sdf.setTimeZone(rome);
+					assertEquals(id + " " + pattern, sdf.format(new Date(millis)), value.getDate(pattern));
+					// a UDate writes the fields of the default zone
+					assertEquals(id + " " + pattern, new SimpleDateFormat(pattern).format(new Date(millis)),
+							value.toUDate().getDate(pattern));
+				}
+			}
+		}
+	}
+}
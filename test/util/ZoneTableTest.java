@@ -0,0 +1,91 @@
+package util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+/**
+ * Title:        ZoneTable test.
+ * Description:  <code>DateMath.offset()</code>, through the table of each zone, gives the
+ *               offset of <code>TimeZone.getOffset(long)</code> a millisecond before, at
+ *               and after every offset change of the range, and at random instants
+ *               inside and outside the range, for every zone of the JDK.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+public class ZoneTableTest {
+
+	private static final long START = DateMath.toEpochDay(ZoneTable.FIRST_YEAR, 1, 1) * DateMath.MILLIS_PER_DAY;
+
+	private static final long END = DateMath.toEpochDay(ZoneTable.LAST_YEAR + 1, 1, 1) * DateMath.MILLIS_PER_DAY;
+
+	@Test
+	public void everyZone() {
+		Random random = new Random(23);
+		int boundaries = 0;
+		for (String id : TimeZone.getAvailableIDs()) {
+			TimeZone zone = TimeZone.getTimeZone(id);
+			for (long t : transitions(id)) {
+				for (long m = t - 1; m <= t + 1; m++) {
+					check(zone, m);
+				}
+				boundaries++;
+			}
+			for (int i = 0; i < 200; i++) {
+				check(zone, START + (long) (random.nextDouble() * (END - START)));
+			}
+			check(zone, START);
+			check(zone, END - 1);
+			check(zone, START - 1);
+			check(zone, END);
+			check(zone, random.nextLong());
+		}
+		assertTrue(boundaries > 10000);
+	}
+
+	@Test
+	public void size() {
+		assertEquals(0, ZoneTable.get(TimeZone.getTimeZone("GMT")).size());
+		// two changes a year in Rome since 1980
+		assertTrue(ZoneTable.get(TimeZone.getTimeZone("Europe/Rome")).size() > 2 * (ZoneTable.LAST_YEAR - 1980));
+	}
+
+	private static void check(TimeZone zone, long millis) {
+		assertEquals(zone.getID() + " at " + millis, zone.getOffset(millis), DateMath.offset(zone, millis));
+	}
+
+	/**
+	 * Offset changes of the range, from the java.time rules of the zone; none if it has
+	 * no such rules.
+	 */
+	private static long[] transitions(String id) {
+		ZoneRules rules;
+		try {
+			rules = ZoneId.of(id, ZoneId.SHORT_IDS).getRules();
+		} catch (DateTimeException e) {
+			return new long[0];
+		}
+		long[] found = new long[16];
+		int count = 0;
+		ZoneOffsetTransition transition = rules.nextTransition(Instant.ofEpochMilli(START - 1));
+		while (transition != null && transition.toEpochSecond() * 1000 < END) {
+			if (count == found.length) {
+				found = Arrays.copyOf(found, count * 2);
+			}
+			found[count++] = transition.toEpochSecond() * 1000;
+			transition = rules.nextTransition(transition.getInstant());
+		}
+		return Arrays.copyOf(found, count);
+	}
+}
@@ -0,0 +1,81 @@
+package util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Title:        Vector API kernel of TimeBuckets.
+ * Description:  Adds whole vectors of rows to one bucket of a <code>TimeBuckets</code>
+ *               roll-up: the instants of a vector are compared with the current run in
+ *               one step and, if they all fall into it, the values are summed and
+ *               compared lane by lane and reduced once per call.
+ *
+ *               The class needs the incubating <code>jdk.incubator.vector</code> module
+ *               (JDK 16 and later), so it is kept apart from the rest of the tree and
+ *               compiled and run with <code>--add-modules jdk.incubator.vector</code>: it
+ *               is the <code>vector</code> source set of the build, and
+ *
+ *               ./gradlew vectorTest
+ *
+ *               runs the TimeBuckets tests with it loaded.  By hand, e.g.
+ *
+ *               javac --add-modules jdk.incubator.vector -cp classes -d classes vector/util/TimeBucketsVector.java
+ *               java --add-modules jdk.incubator.vector -cp classes ...
+ *
+ *               <code>TimeBuckets</code> loads it by name and adds rows one at a time when
+ *               it is missing or cannot be loaded.
+ *
+ * @author dotJ Software
+ * @version 1.0
+ */
+final class TimeBucketsVector implements TimeBuckets.Kernel {
+
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+	// Same shape as LONGS: both have 64-bit lanes
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+	TimeBucketsVector() {
+	}
+
+	public int accumulate(long[] millis, double[] values, int from, int to, long runStart, long runEnd,
+			double[] sums, double[] mins, double[] maxs, int bucket) {
+		int lanes = LONGS.length();
+		int i = from;
+		if (values == null) {
+			for (; i + lanes <= to; i += lanes) {
+				if (!inRun(millis, i, runStart, runEnd)) {
+					break;
+				}
+			}
+			return i;
+		}
+		DoubleVector sum = DoubleVector.zero(DOUBLES);
+		DoubleVector min = DoubleVector.broadcast(DOUBLES, Double.POSITIVE_INFINITY);
+		DoubleVector max = DoubleVector.broadcast(DOUBLES, Double.NEGATIVE_INFINITY);
+		for (; i + lanes <= to; i += lanes) {
+			if (!inRun(millis, i, runStart, runEnd)) {
+				break;
+			}
+			DoubleVector v = DoubleVector.fromArray(DOUBLES, values, i);
+			sum = sum.add(v);
+			min = min.min(v);
+			max = max.max(v);
+		}
+		if (i > from) {
+			sums[bucket] += sum.reduceLanes(VectorOperators.ADD);
+			mins[bucket] = Math.min(mins[bucket], min.reduceLanes(VectorOperators.MIN));
+			maxs[bucket] = Math.max(maxs[bucket], max.reduceLanes(VectorOperators.MAX));
+		}
+		return i;
+	}
+
+	private static boolean inRun(long[] millis, int i, long runStart, long runEnd) {
+		LongVector m = LongVector.fromArray(LONGS, millis, i);
+		VectorMask<Long> in = m.compare(VectorOperators.GE, runStart).and(m.compare(VectorOperators.LT, runEnd));
+		return in.allTrue();
+	}
+}